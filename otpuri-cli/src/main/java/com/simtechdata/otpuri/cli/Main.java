@@ -0,0 +1,298 @@
+package com.simtechdata.otpuri.cli;
+
+import com.google.zxing.NotFoundException;
+import com.simtechdata.otpuri.OTPURI;
+import com.simtechdata.otpuri.qr.OTPQR;
+
+import java.io.*;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Command line tool for batch jobs on OTPAuth Strings. Every command reads one item per line from stdin
+ * and writes one result per line to stdout, so it can be used in shell pipelines. Lines that cannot be
+ * processed are reported on stderr with their line number and the tool exits with 1 once it is done.
+ * <p>
+ * The output only depends on the input: OTPAuth Strings without an issuer are printed with an empty issuer
+ * by parse and codes, and rejected by normalize, instead of being given a made up "Unknown Company" name.
+ * <p>
+ * parse, normalize and codes only use the core module and no reflection, so they can run from a GraalVM
+ * native image (see the native profile). decode-qr needs ImageIO, which the native profile ships no
+ * metadata for, so it is meant to run on the JVM.
+ */
+public class Main {
+
+    private static final String USAGE = """
+            Usage: otpuri <command> [options]
+
+            Commands (each reads one item per line from stdin):
+              parse              Validate OTPAuth Strings and print issuer, account, algorithm, digits and period
+              normalize          Print each OTPAuth String fully populated and properly formatted
+                                   (lines without an issuer are rejected)
+                  --decoded        Print it without the %Hex codes
+              decode-qr [path]   Decode QR code images and print the OTPAuth String in each one, as it is
+                                   in the image
+                                   (paths of image files or folders, from the arguments or else from stdin)
+              codes              Print issuer, account and the current One Time Password of each OTPAuth String
+                  --split          Print the password with a dash at the mid-point
+                  --time <millis>  Use this time instead of the current time
+            """;
+
+    private final BufferedWriter out;
+    private final PrintStream err;
+    private int failures;
+
+    private Main(BufferedWriter out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    public static void main(String[] args) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        int status = new Main(out, System.err).run(args, in);
+        out.flush();
+        System.exit(status);
+    }
+
+    private int run(String[] args, BufferedReader in) throws IOException {
+        if (args.length == 0) {
+            err.print(USAGE);
+            return 2;
+        }
+        List<String> options = List.of(args).subList(1, args.length);
+        switch (args[0]) {
+            case "parse" -> parse(in);
+            case "normalize" -> normalize(in, options.contains("--decoded"));
+            case "decode-qr" -> decodeQR(in, options);
+            case "codes" -> {
+                long time = System.currentTimeMillis();
+                int index = options.indexOf("--time");
+                if (index >= 0) {
+                    if (index + 1 >= options.size()) {
+                        err.println("--time needs a value in milliseconds");
+                        return 2;
+                    }
+                    try {
+                        time = Long.parseLong(options.get(index + 1));
+                    } catch (NumberFormatException e) {
+                        err.println("--time needs a value in milliseconds");
+                        return 2;
+                    }
+                }
+                codes(in, options.contains("--split"), time);
+            }
+            case "help", "--help", "-h" -> {
+                out.write(USAGE);
+                return 0;
+            }
+            default -> {
+                err.println("Unknown command: " + args[0]);
+                err.print(USAGE);
+                return 2;
+            }
+        }
+        return (failures == 0) ? 0 : 1;
+    }
+
+    private void parse(BufferedReader in) throws IOException {
+        String line;
+        int number = 0;
+        while ((line = in.readLine()) != null) {
+            number++;
+            OTPURI otpuri = build(line, "line " + number, false);
+            if (otpuri != null) {
+                write(otpuri.getIssuer(), otpuri.getLabelAccount(), otpuri.getAlgorithmString(), String.valueOf(otpuri.getDigits()), String.valueOf(otpuri.getPeriod()));
+            }
+        }
+    }
+
+    private void normalize(BufferedReader in, boolean decoded) throws IOException {
+        String line;
+        int number = 0;
+        while ((line = in.readLine()) != null) {
+            number++;
+            OTPURI otpuri = build(line, "line " + number, true);
+            if (otpuri != null) {
+                try {
+                    write(decoded ? otpuri.getOTPAuthStringDecoded() : otpuri.getOTPAuthString());
+                } catch (Exception e) {
+                    fail("line " + number, e);
+                }
+            }
+        }
+    }
+
+    private void codes(BufferedReader in, boolean split, long time) throws IOException {
+        String line;
+        int number = 0;
+        while ((line = in.readLine()) != null) {
+            number++;
+            OTPURI otpuri = build(line, "line " + number, false);
+            if (otpuri != null) {
+                try {
+                    write(otpuri.getIssuer(), otpuri.getLabelAccount(), split ? otpuri.getOTPSplit(time) : otpuri.getOTPString(time));
+                } catch (Exception e) {
+                    fail("line " + number, e);
+                }
+            }
+        }
+    }
+
+    private void decodeQR(BufferedReader in, List<String> paths) throws IOException {
+        if (paths.isEmpty()) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.isBlank()) {
+                    decodeQR(Path.of(line.strip()));
+                }
+            }
+        }
+        else {
+            for (String path : paths) {
+                decodeQR(Path.of(path));
+            }
+        }
+    }
+
+    private void decodeQR(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            List<Path> files = new ArrayList<>();
+            try (Stream<Path> stream = Files.list(path)) {
+                stream.filter(Files::isRegularFile).sorted().forEach(files::add);
+            }
+            for (Path file : files) {
+                decodeQR(file);
+            }
+            return;
+        }
+        try {
+            String text = OTPQR.decode(path.toFile()).getText();
+            if (text.isBlank()) {
+                failures++;
+                err.println(path + ": QR code is empty");
+            }
+            else if (build(text, path.toString(), false) != null) {
+                write(text.strip());
+            }
+        } catch (NotFoundException e) {
+            failures++;
+            err.println(path + ": no QR code found");
+        } catch (Exception e) {
+            failures++;
+            err.println(path + ": " + describe(e));
+        }
+    }
+
+    /**
+     * Builds the OTPURI for one line, or for the text of one QR code. The text is checked before it is handed
+     * to the Builder, so that every bad line is reported once, by this tool, with a reason that fits. When the
+     * text has no issuer, the issuer the Builder made up is cleared, or the text fails when requireIssuer is
+     * true. Where is what the error message points to ("line 3" or the path of the image).
+     */
+    private OTPURI build(String line, String where, boolean requireIssuer) {
+        if (line.isBlank()) {
+            return null;
+        }
+        String otpAuth = line.strip();
+        String decoded;
+        try {
+            decoded = URLDecoder.decode(otpAuth, StandardCharsets.ISO_8859_1);
+        } catch (IllegalArgumentException e) {
+            return fail(where, "bad %Hex code");
+        }
+        if (!decoded.startsWith("otpauth://totp")) {
+            return fail(where, "not an otpauth://totp String");
+        }
+        int query = decoded.indexOf('?');
+        if (query < 0) {
+            return fail(where, "no secret");
+        }
+        String label = decoded.substring(0, query).replaceFirst("otpauth://totp/?", "");
+        boolean hasIssuer = (label.contains("(") && label.contains(")")) || label.indexOf(':') > 0;
+        if (label.endsWith(":")) {
+            return fail(where, "label has no account after the issuer");
+        }
+        boolean hasSecret = false;
+        for (String parameter : decoded.substring(query + 1).split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals <= 0 || equals == parameter.length() - 1) {
+                return fail(where, "parameter without a value: " + parameter);
+            }
+            String name = parameter.substring(0, equals).toLowerCase();
+            hasSecret |= name.equals("secret");
+            hasIssuer |= name.equals("issuer");
+        }
+        if (!hasSecret) {
+            return fail(where, "no secret");
+        }
+        if (!hasIssuer && requireIssuer) {
+            return fail(where, "no issuer");
+        }
+        try {
+            OTPURI otpuri = new OTPURI.Builder(otpAuth).build();
+            if (otpuri == null) {
+                return fail(where, "no secret");
+            }
+            if (otpuri.getAlgorithm() == null) {
+                return fail(where, "unknown algorithm");
+            }
+            if (!isOneOf(otpuri::getDigits, 6, 7, 8)) {
+                return fail(where, "digits must be 6, 7 or 8");
+            }
+            if (!isOneOf(otpuri::getPeriod, 15, 30, 60)) {
+                return fail(where, "period must be 15, 30 or 60");
+            }
+            if (!hasIssuer) {
+                otpuri.setIssuer("");
+            }
+            return otpuri;
+        } catch (Exception e) {
+            return fail(where, e);
+        }
+    }
+
+    private boolean isOneOf(IntSupplier value, int... allowed) {
+        try {
+            int actual = value.getAsInt();
+            for (int option : allowed) {
+                if (actual == option) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private OTPURI fail(String where, Exception e) {
+        return fail(where, describe(e));
+    }
+
+    private OTPURI fail(String where, String reason) {
+        failures++;
+        err.println(where + ": " + reason);
+        return null;
+    }
+
+    private String describe(Exception e) {
+        return (e.getMessage() == null) ? e.getClass().getSimpleName() : e.getMessage();
+    }
+
+    private void write(String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                out.write('\t');
+            }
+            out.write(fields[i]);
+        }
+        out.newLine();
+    }
+}
@@ -0,0 +1,4 @@
+module com.simtechdata.otpuri.cli {
+    requires com.simtechdata.otpuri;
+    requires com.simtechdata.otpuri.qr;
+}
@@ -0,0 +1,358 @@
+package com.simtechdata.otpuri;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Guards One Time Password verification against brute force guessing.
+ * <p>
+ * Every account (keyed by its dbId, or by a hash of its secret when no dbId was assigned) gets a small
+ * token bucket that is refilled at the start of every time step of that account (see OTPURI.getPeriod()).
+ * When the bucket runs dry, the account is locked out, and every lockout that follows without a successful
+ * verification in between doubles in length, up to the configured maximum. Once a lockout ends, the bucket
+ * is full again.
+ * <p>
+ * The state lives in a fixed size table of slots that are updated with compare and set only, so there is
+ * no lock to fight over no matter how many threads are verifying codes. Memory is bounded by the table size;
+ * when the slots near a new key are all taken, the one that was used least recently is evicted. An account
+ * that is locked out, or whose last lockout ended less than maxLockout ago, is never evicted, because
+ * evicting it would wipe its lockout. When every slot near a new key holds such an account, the key looks
+ * further along the table, so someone who locks out a handful of accounts does not also lock out their
+ * neighbours. Only when that wider window is full of lockouts as well is the new key denied; attempt()
+ * reports this as NO_ROOM, which is not the same as a wrong code.
+ */
+public class BruteForceLimiter {
+
+    private static final int PROBES = 4;
+    private static final int OVERFLOW_PROBES = 16;
+
+    private final AtomicReferenceArray<Bucket> slots;
+    private final int mask;
+    private final int attemptsPerStep;
+    private final long baseLockout;
+    private final long maxLockout;
+
+    /**
+     * Runs between find() and the read of the slot it returned; lets tests change the slot in that window.
+     */
+    IntConsumer afterFind = index -> {};
+
+    /**
+     * Builder class
+     */
+    public static class Builder {
+
+        /**
+         * Default Constructor
+         */
+        public Builder() {
+        }
+
+        private int capacity = 65536;
+        private int attemptsPerStep = 5;
+        private long baseLockout = 30_000L;
+        private long maxLockout = 3_600_000L;
+
+        /**
+         * The maximum number of accounts that the limiter will track at once. This is rounded up to the
+         * next power of two.
+         *
+         * @param capacity - int
+         * @return Builder
+         */
+        public Builder capacity(int capacity) {
+            if (capacity < PROBES) {
+                System.err.println("capacity (in Builder sentence) must be at least " + PROBES);
+            }
+            else {
+                this.capacity = capacity;
+            }
+            return this;
+        }
+
+        /**
+         * The number of verification attempts an account is allowed within a single time step.
+         *
+         * @param attemptsPerStep - int
+         * @return Builder
+         */
+        public Builder attemptsPerStep(int attemptsPerStep) {
+            if (attemptsPerStep < 1) {
+                System.err.println("attemptsPerStep (in Builder sentence) must be at least 1");
+            }
+            else {
+                this.attemptsPerStep = attemptsPerStep;
+            }
+            return this;
+        }
+
+        /**
+         * The length of the first lockout in milliseconds. Each lockout that follows doubles in length.
+         *
+         * @param baseLockout - long
+         * @return Builder
+         */
+        public Builder baseLockout(long baseLockout) {
+            if (baseLockout < 1) {
+                System.err.println("baseLockout (in Builder sentence) must be at least 1 millisecond");
+            }
+            else {
+                this.baseLockout = baseLockout;
+            }
+            return this;
+        }
+
+        /**
+         * The longest a single lockout can last in milliseconds.
+         *
+         * @param maxLockout - long
+         * @return Builder
+         */
+        public Builder maxLockout(long maxLockout) {
+            if (maxLockout < 1) {
+                System.err.println("maxLockout (in Builder sentence) must be at least 1 millisecond");
+            }
+            else {
+                this.maxLockout = maxLockout;
+            }
+            return this;
+        }
+
+        /**
+         * This returns the BruteForceLimiter that has been built with this Builder class
+         *
+         * @return BruteForceLimiter
+         */
+        public BruteForceLimiter build() {
+            return new BruteForceLimiter(this);
+        }
+    }
+
+    private BruteForceLimiter(Builder build) {
+        int size = Integer.highestOneBit(Math.max(PROBES, build.capacity) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.attemptsPerStep = build.attemptsPerStep;
+        this.baseLockout = build.baseLockout;
+        this.maxLockout = Math.max(build.baseLockout, build.maxLockout);
+    }
+
+    /**
+     * The state of a single account. Instances are never modified, a new one replaces the old one.
+     */
+    private record Bucket(long key, long step, int tokens, int lockouts, long lockedUntil, long lastSeen) {}
+
+    /**
+     * Checks the code against the current One Time Password of the OTPURI, but only if the account still
+     * has attempts left. A locked out account always fails, even when the code is correct. The current time
+     * is read from the clock of the OTPURI.
+     *
+     * @param otpuri - an OTPURI instance
+     * @param code   - int
+     * @return - true if the attempt was allowed and the code is correct
+     */
+    public boolean verify(OTPURI otpuri, int code) {
+        return verify(otpuri, code, otpuri.getClock().millis());
+    }
+
+    /**
+     * Same as verify(OTPURI, int) only the time of the attempt is passed in as argument.
+     *
+     * @param otpuri - an OTPURI instance
+     * @param code   - int
+     * @param time   - long
+     * @return - true if the attempt was allowed and the code is correct
+     */
+    public boolean verify(OTPURI otpuri, int code, long time) {
+        return attempt(otpuri, code, time) == VerifyResult.VALID;
+    }
+
+    /**
+     * Same as verify(OTPURI, int), only it tells you why an attempt failed.
+     *
+     * @param otpuri - an OTPURI instance
+     * @param code   - int
+     * @return - VerifyResult
+     */
+    public VerifyResult attempt(OTPURI otpuri, int code) {
+        return attempt(otpuri, code, otpuri.getClock().millis());
+    }
+
+    /**
+     * Same as attempt(OTPURI, int) only the time of the attempt is passed in as argument.
+     *
+     * @param otpuri - an OTPURI instance
+     * @param code   - int
+     * @param time   - long
+     * @return - VerifyResult
+     */
+    public VerifyResult attempt(OTPURI otpuri, int code, long time) {
+        VerifyResult denied = acquire(otpuri, time);
+        if (denied != null) {
+            return denied;
+        }
+        if (otpuri.getOTP(time) != code) {
+            return VerifyResult.WRONG_CODE;
+        }
+        recordSuccess(otpuri);
+        return VerifyResult.VALID;
+    }
+
+    /**
+     * Takes one attempt from the bucket of the account. Use this when you verify the code yourself, and call
+     * recordSuccess() once the code turned out to be correct.
+     *
+     * @param otpuri - an OTPURI instance
+     * @param time   - long
+     * @return - true if the account is allowed to make the attempt (when it is not, lockedUntil() tells a
+     * lockout apart from a full table)
+     */
+    public boolean tryAcquire(OTPURI otpuri, long time) {
+        return acquire(otpuri, time) == null;
+    }
+
+    /**
+     * @return - null when the attempt is allowed, otherwise LOCKED_OUT or NO_ROOM
+     */
+    private VerifyResult acquire(OTPURI otpuri, long time) {
+        long key = keyOf(otpuri);
+        long step = time / (otpuri.getPeriod() * 1000L);
+        while (true) {
+            int index = find(key, time);
+            if (index < 0) {
+                return VerifyResult.NO_ROOM;
+            }
+            afterFind.accept(index);
+            Bucket current = slots.get(index);
+            Bucket next;
+            boolean allowed;
+            if (current != null && current.key() != key && holdsLockout(current, time)) {
+                continue; //Locked out since find() looked at it, so it may no longer be taken over
+            }
+            if (current == null || current.key() != key) {
+                next = new Bucket(key, step, attemptsPerStep - 1, 0, 0L, time);
+                allowed = true;
+            }
+            else if (time < current.lockedUntil()) {
+                return VerifyResult.LOCKED_OUT;
+            }
+            else {
+                int tokens = (step != current.step()) ? attemptsPerStep : current.tokens();
+                if (tokens > 0) {
+                    next = new Bucket(key, step, tokens - 1, current.lockouts(), current.lockedUntil(), time);
+                    allowed = true;
+                }
+                else {
+                    int lockouts = current.lockouts() + 1;
+                    next = new Bucket(key, step, attemptsPerStep, lockouts, time + lockoutFor(lockouts), time);
+                    allowed = false;
+                }
+            }
+            if (slots.compareAndSet(index, current, next)) {
+                return allowed ? null : VerifyResult.LOCKED_OUT;
+            }
+        }
+    }
+
+    /**
+     * Clears the lockout history of the account after a correct code was entered.
+     *
+     * @param otpuri - an OTPURI instance
+     */
+    public void recordSuccess(OTPURI otpuri) {
+        long key = keyOf(otpuri);
+        int start = spread(key);
+        for (int i = 0; i < PROBES + OVERFLOW_PROBES; i++) {
+            int index = (start + i) & mask;
+            Bucket current;
+            while ((current = slots.get(index)) != null && current.key() == key) {
+                Bucket next = new Bucket(key, current.step(), current.tokens(), 0, 0L, current.lastSeen());
+                if (slots.compareAndSet(index, current, next)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the time (in milliseconds) when the current lockout of the account ends.
+     *
+     * @param otpuri - an OTPURI instance
+     * @return - long (0 if the account is not tracked or has never been locked out)
+     */
+    public long lockedUntil(OTPURI otpuri) {
+        long key = keyOf(otpuri);
+        int start = spread(key);
+        for (int i = 0; i < PROBES + OVERFLOW_PROBES; i++) {
+            Bucket bucket = slots.get((start + i) & mask);
+            if (bucket != null && bucket.key() == key) {
+                return bucket.lockedUntil();
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Finds the slot that belongs to the key, or the slot that the key should take over, which is the first
+     * empty slot or else the slot that was used least recently and holds no lockout. A new key only goes past
+     * the first PROBES slots when all of them hold a lockout, and then takes a slot from the OVERFLOW_PROBES
+     * slots that follow. Returns -1 when every slot in both windows holds a lockout.
+     */
+    private int find(long key, long time) {
+        int start = spread(key);
+        int victim = -1;
+        int overflowVictim = -1;
+        long oldest = Long.MAX_VALUE;
+        long overflowOldest = Long.MAX_VALUE;
+        for (int i = 0; i < PROBES + OVERFLOW_PROBES; i++) {
+            int index = (start + i) & mask;
+            Bucket bucket = slots.get(index);
+            if (bucket == null) {
+                //A slot never becomes empty again, so the key was never stored further along
+                return (i >= PROBES && victim >= 0) ? victim : index;
+            }
+            else if (bucket.key() == key) {
+                return index;
+            }
+            else if (!holdsLockout(bucket, time)) {
+                if (i < PROBES && bucket.lastSeen() < oldest) {
+                    victim = index;
+                    oldest = bucket.lastSeen();
+                }
+                else if (i >= PROBES && bucket.lastSeen() < overflowOldest) {
+                    overflowVictim = index;
+                    overflowOldest = bucket.lastSeen();
+                }
+            }
+        }
+        return (victim < 0) ? overflowVictim : victim;
+    }
+
+    /**
+     * A bucket holds a lockout while it is locked out, and for maxLockout after that so the next lockout can
+     * still double.
+     */
+    private boolean holdsLockout(Bucket bucket, long time) {
+        return bucket.lockouts() > 0 && time - maxLockout < bucket.lockedUntil();
+    }
+
+    private long lockoutFor(int lockouts) {
+        int shift = lockouts - 1;
+        if (shift >= Long.numberOfLeadingZeros(baseLockout) - 1) {
+            return maxLockout;
+        }
+        return Math.min(maxLockout, baseLockout << shift);
+    }
+
+    private long keyOf(OTPURI otpuri) {
+        if (otpuri.getDbId() != 0) {
+            return otpuri.getDbId();
+        }
+        return ((long) otpuri.getSecret().hashCode() << 32) | 0x80000000L | otpuri.getSecret().length();
+    }
+
+    int spread(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,123 @@
+package com.simtechdata.otpuri;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A Clock that only changes once per tick. A background thread reads the system time at the start of every
+ * tick and stores it, rounded down to the tick, so reading this clock is just reading a field.
+ * <p>
+ * This saves a system time call for every One Time Password you generate, which adds up when many OTPURI
+ * objects share one instance. Reading the clock once per code still lets a batch that runs while the clock
+ * ticks over a step boundary get codes from two time steps; OTPURI.getOTPs(List, Clock) and
+ * OTPURI.getOTPSplits(List, Clock) read the clock once for the whole batch, so every code of a refresh comes
+ * from the same step. Close() the clock when you no longer need it.
+ */
+public class CoarseClock extends Clock implements AutoCloseable {
+
+    private final long tick;
+    private final ZoneId zone;
+    private final ScheduledExecutorService scheduler;
+    private volatile long current;
+
+    /**
+     * Default Constructor, which ticks once per second.
+     */
+    public CoarseClock() {
+        this(1000L);
+    }
+
+    /**
+     * @param tickMillis - long (the number of milliseconds between updates)
+     */
+    public CoarseClock(long tickMillis) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("tickMillis must be at least 1");
+        }
+        this.tick = tickMillis;
+        this.zone = ZoneOffset.UTC;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "OTPURI-CoarseClock");
+            thread.setDaemon(true);
+            return thread;
+        });
+        update();
+        long now = System.currentTimeMillis();
+        long untilNextTick = tick - (now % tick);
+        scheduler.scheduleAtFixedRate(this::update, untilNextTick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    private void update() {
+        long now = System.currentTimeMillis();
+        current = now - (now % tick);
+    }
+
+    /**
+     * gets the number of milliseconds between updates
+     *
+     * @return - long
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    @Override
+    public long millis() {
+        return current;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(current);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * Returns a clock that reads the same cached time as this one, in the given zone.
+     */
+    @Override
+    public Clock withZone(ZoneId zone) {
+        if (zone.equals(this.zone)) {
+            return this;
+        }
+        CoarseClock source = this;
+        return new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return zone;
+            }
+
+            @Override
+            public Clock withZone(ZoneId other) {
+                return source.withZone(other);
+            }
+
+            @Override
+            public long millis() {
+                return source.millis();
+            }
+
+            @Override
+            public Instant instant() {
+                return source.instant();
+            }
+        };
+    }
+
+    /**
+     * Stops the background thread. The clock keeps returning the last time it read.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
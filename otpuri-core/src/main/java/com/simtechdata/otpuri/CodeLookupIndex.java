@@ -0,0 +1,291 @@
+package com.simtechdata.otpuri;
+
+import java.lang.invoke.VarHandle;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the entries whose current One Time Password is a given code, for when all you have is the code
+ * ("my 6 digits are 123-456").
+ * <p>
+ * Entries are grouped by getPeriod(). Once per time step of a group, the current codes of all of its entries
+ * are computed in parallel and put into an open addressing hash map from code to entry, so a lookup is a
+ * couple of array reads instead of generating a password for every entry.
+ * <p>
+ * Every group has two maps. The rebuild fills the one that is not being read and then swaps them, and a
+ * lookup that overlaps with a map being refilled notices and reads again, so a lookup never sees a half
+ * built map. The rebuild happens on the first lookup of a new time step, or whenever you call refresh().
+ * <p>
+ * The index does not follow changes to the collection it was built from; build a new one when entries are
+ * added, removed or given a new secret.
+ */
+public class CodeLookupIndex {
+
+    private final OTPURI[] entries;
+    private final Group[] groups;
+    private final Clock clock;
+
+    /**
+     * @param otpuris - Collection of OTPURI
+     */
+    public CodeLookupIndex(Collection<OTPURI> otpuris) {
+        this(otpuris, Clock.systemUTC());
+    }
+
+    /**
+     * @param otpuris - Collection of OTPURI
+     * @param clock   - Clock (the time that is used to decide which codes are current)
+     */
+    public CodeLookupIndex(Collection<OTPURI> otpuris, Clock clock) {
+        this.entries = otpuris.toArray(new OTPURI[0]);
+        this.clock = clock;
+        Map<Integer, List<Integer>> byPeriod = new TreeMap<>();
+        for (int i = 0; i < entries.length; i++) {
+            byPeriod.computeIfAbsent(entries[i].getPeriod(), period -> new ArrayList<>()).add(i);
+        }
+        this.groups = new Group[byPeriod.size()];
+        int g = 0;
+        for (Map.Entry<Integer, List<Integer>> group : byPeriod.entrySet()) {
+            int[] members = group.getValue().stream().mapToInt(Integer::intValue).toArray();
+            groups[g++] = new Group(group.getKey() * 1000L, members);
+        }
+    }
+
+    /**
+     * gets the entries whose current One Time Password is the code. An int has no leading zeros, so this
+     * matches entries with any number of digits; use lookup(String) to only match the digits that were typed.
+     *
+     * @param code - int
+     * @return - List of OTPURI (empty when no entry has that code)
+     */
+    public List<OTPURI> lookup(int code) {
+        return lookup(code, clock.millis());
+    }
+
+    List<OTPURI> lookup(int code, long now) {
+        List<OTPURI> found = new ArrayList<>(1);
+        for (Group group : groups) {
+            for (int index : group.lookup(code, now)) {
+                found.add(entries[index]);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Same as lookup(int) for a code as it was typed in, with or without the dash. Only entries with as many
+     * digits as the code are returned, so "123-456" does not match an 8 digit entry whose code is 00123456.
+     *
+     * @param code - String
+     * @return - List of OTPURI (empty when no entry has that code or the code is not a number)
+     */
+    public List<OTPURI> lookup(String code) {
+        String digits = code.replace("-", "").trim();
+        if (digits.isEmpty() || digits.length() > 8 || !digits.chars().allMatch(Character::isDigit)) {
+            return new ArrayList<>();
+        }
+        List<OTPURI> found = lookup(Integer.parseInt(digits));
+        found.removeIf(otpuri -> otpuri.getDigits() != digits.length());
+        return found;
+    }
+
+    /**
+     * Same as lookup(int), returning the dbId of every entry instead of the entry.
+     *
+     * @param code - int
+     * @return - int[] of dbIds
+     */
+    public int[] lookupDbIds(int code) {
+        return lookup(code).stream().mapToInt(OTPURI::getDbId).toArray();
+    }
+
+    /**
+     * Rebuilds every group whose time step has changed, instead of waiting for the next lookup to do it.
+     * Call this from a scheduled task at the start of every step if you want lookups to never wait for a
+     * rebuild.
+     */
+    public void refresh() {
+        long now = clock.millis();
+        for (Group group : groups) {
+            group.current(now);
+        }
+    }
+
+    /**
+     * gets the number of entries in the index
+     *
+     * @return - int
+     */
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * gets the number of times a group was rebuilt
+     *
+     * @return - long
+     */
+    long rebuilds() {
+        long rebuilds = 0;
+        for (Group group : groups) {
+            rebuilds += group.rebuilds;
+        }
+        return rebuilds;
+    }
+
+    /**
+     * All entries with the same period, and the two maps they are kept in.
+     */
+    private final class Group {
+
+        private final long stepMillis;
+        private final int[] members;
+        private final int[] codes;
+        private final CodeMap[] maps;
+        private volatile CodeMap front;
+        private volatile long rebuilds;
+
+        Group(long stepMillis, int[] members) {
+            this.stepMillis = stepMillis;
+            this.members = members;
+            this.codes = new int[members.length];
+            this.maps = new CodeMap[]{new CodeMap(members.length), new CodeMap(members.length)};
+        }
+
+        int[] lookup(int code, long now) {
+            while (true) {
+                long step = Math.floorDiv(now, stepMillis);
+                int[] found = current(now).get(code, step);
+                if (found != null) {
+                    return found;
+                }
+                now = clock.millis();
+            }
+        }
+
+        CodeMap current(long now) {
+            long step = Math.floorDiv(now, stepMillis);
+            CodeMap map = front;
+            if (map != null && (map.step() == step || isBehind(step, map))) {
+                return map;
+            }
+            synchronized (this) {
+                map = front;
+                if (map != null && (map.step() == step || isBehind(step, map))) {
+                    return map;
+                }
+                rebuilds++;
+                CodeMap back = (map == maps[0]) ? maps[1] : maps[0];
+                long time = step * stepMillis;
+                IntStream.range(0, members.length).parallel().forEach(i -> codes[i] = entries[members[i]].getOTP(time));
+                back.fill(codes, members, step);
+                front = back;
+                return back;
+            }
+        }
+
+        /**
+         * A time from before the step that another thread has already moved the map to. Rebuilding for it
+         * would move the map back and the next lookup would move it forward again, so the map only goes
+         * back when the clock itself did. lookup() sees the step does not match and reads the clock again.
+         */
+        private boolean isBehind(long step, CodeMap map) {
+            return step < map.step() && Math.floorDiv(clock.millis(), stepMillis) >= map.step();
+        }
+    }
+
+    /**
+     * Open addressing hash map from code to the entries that have that code, stored in int arrays. Entries
+     * with the same code are chained through next[].
+     * <p>
+     * The step works like a sequence number: it is set to NO_STEP before the map is refilled and to the new step
+     * once it is full, and get() only trusts what it read when the step was the expected one both before and
+     * after reading.
+     */
+    private static final class CodeMap {
+
+        private static final int EMPTY = -1;
+        private static final long NO_STEP = Long.MIN_VALUE;
+
+        private final int[] keys;
+        private final int[] heads;
+        private final int[] next;
+        private final int[] counts;
+        private final int[] members;
+        private final int mask;
+        private volatile long step = NO_STEP;
+
+        CodeMap(int size) {
+            int capacity = Integer.highestOneBit(Math.max(2, size) * 2 - 1) << 1;
+            this.keys = new int[capacity];
+            this.heads = new int[capacity];
+            this.counts = new int[capacity];
+            this.next = new int[size];
+            this.members = new int[size];
+            this.mask = capacity - 1;
+        }
+
+        long step() {
+            return step;
+        }
+
+        void fill(int[] codes, int[] memberIndexes, long newStep) {
+            step = NO_STEP;
+            VarHandle.storeStoreFence();
+            Arrays.fill(heads, EMPTY);
+            for (int i = 0; i < codes.length; i++) {
+                members[i] = memberIndexes[i];
+                int slot = slot(codes[i]);
+                while (heads[slot] != EMPTY && keys[slot] != codes[i]) {
+                    slot = (slot + 1) & mask;
+                }
+                if (heads[slot] == EMPTY) {
+                    keys[slot] = codes[i];
+                    counts[slot] = 0;
+                }
+                next[i] = heads[slot];
+                heads[slot] = i;
+                counts[slot]++;
+            }
+            step = newStep;
+        }
+
+        /**
+         * @return - the indexes of the entries with the code, or null if the map changed while reading
+         */
+        int[] get(int code, long expectedStep) {
+            if (step != expectedStep) {
+                return null;
+            }
+            int[] found = new int[0];
+            int slot = slot(code);
+            int probes = 0;
+            while (heads[slot] != EMPTY && probes++ <= mask) {
+                if (keys[slot] == code) {
+                    int count = Math.min(counts[slot], next.length);
+                    found = new int[count];
+                    int i = heads[slot];
+                    for (int n = 0; n < count && i >= 0 && i < next.length; n++) {
+                        found[n] = members[i];
+                        i = next[i];
+                    }
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            VarHandle.acquireFence();
+            return (step == expectedStep) ? found : null;
+        }
+
+        private int slot(int code) {
+            int hash = code * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.simtechdata.otpuri;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * A precomputed table of future One Time Passwords, for verifying codes on machines that must never see
+ * the secrets.
+ * <p>
+ * export() writes, for every entry and every time step (of that entry's period, which is also the step
+ * getOTP() uses) in the given time range, a salted hash of the code that getOTP() returns in that step. The table holds no secrets
+ * and no codes, only the first four bytes of SHA-256(salt, dbId, step, code), so a lookup tells you whether
+ * a code is right and nothing else. Keep in mind that a code only has a million possible values, so the
+ * table still has to be protected like any other credential store; the salt just keeps tables from being
+ * compared or attacked in bulk.
+ * <p>
+ * open() memory maps the file, in chunks of 1GB so that tables of large vaults can be bigger than 2GB, and
+ * verify() checks a code with a binary search over the index and a single read from the mapped file.
+ * <p>
+ * File layout: a 64 byte header (magic, version, salt, start, end, entry count), then one 32 byte index
+ * record per entry sorted by dbId (dbId, period, first step, number of steps, offset, digits), then the
+ * hashes.
+ */
+public class CodeTable implements AutoCloseable {
+
+    private static final int MAGIC = 0x4F545054; //OTPT
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int INDEX_BYTES = 32;
+    private static final int HASH_BYTES = 4;
+    private static final int SALT_BYTES = 16;
+    private static final int BLOCK_STEPS = 16_384; //Hashes written per entry at a time
+    private static final int CHUNK_BITS = 30; //Multiple of INDEX_BYTES, so no record or hash spans two chunks
+    private static final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    });
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+    private final int chunkBits;
+    private final long chunkMask;
+    private final byte[] salt;
+    private final long start;
+    private final long end;
+    private final int entryCount;
+
+    private CodeTable(FileChannel channel, int chunkBits) throws IOException {
+        this.channel = channel;
+        this.chunkBits = chunkBits;
+        this.chunkMask = (1L << chunkBits) - 1;
+        long size = channel.size();
+        if (size < HEADER_BYTES) {
+            throw new IOException("Not an OTPURI code table");
+        }
+        this.chunks = new MappedByteBuffer[Math.toIntExact(((size - 1) >>> chunkBits) + 1)];
+        for (int i = 0; i < chunks.length; i++) {
+            long position = (long) i << chunkBits;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, 1L << chunkBits));
+        }
+        if (getInt(0) != MAGIC) {
+            throw new IOException("Not an OTPURI code table");
+        }
+        if (getInt(4) != VERSION) {
+            throw new IOException("Unsupported code table version " + getInt(4));
+        }
+        this.salt = new byte[SALT_BYTES];
+        chunks[0].get(8, salt);
+        this.start = getLong(24);
+        this.end = getLong(32);
+        this.entryCount = getInt(40);
+        if (size < HEADER_BYTES + (long) INDEX_BYTES * entryCount) {
+            throw new IOException("Code table is cut short");
+        }
+    }
+
+    /**
+     * Writes the code table for all entries, from start up to (but not including) end, to the file.
+     * The hashes are computed in parallel and each entry is written straight to its place in the file, so
+     * the table never has to fit in memory.
+     *
+     * @param otpuris - Collection of OTPURI (every dbId must be unique)
+     * @param file    - Path
+     * @param start   - long (milliseconds)
+     * @param end     - long (milliseconds)
+     * @throws IOException - if the file cannot be written
+     */
+    public static void export(Collection<OTPURI> otpuris, Path file, long start, long end) throws IOException {
+        if (end <= start) {
+            throw new IllegalArgumentException("end must be after start");
+        }
+        List<OTPURI> entries = new ArrayList<>(otpuris);
+        entries.sort(Comparator.comparingInt(OTPURI::getDbId));
+        int count = entries.size();
+        long[] firstSteps = new long[count];
+        int[] steps = new int[count];
+        long[] offsets = new long[count];
+        long offset = HEADER_BYTES + (long) INDEX_BYTES * count;
+        for (int i = 0; i < count; i++) {
+            OTPURI otpuri = entries.get(i);
+            if (i > 0 && otpuri.getDbId() == entries.get(i - 1).getDbId()) {
+                throw new IllegalArgumentException("dbId " + otpuri.getDbId() + " is used by more than one entry");
+            }
+            long period = otpuri.getPeriod() * 1000L;
+            firstSteps[i] = Math.floorDiv(start, period);
+            steps[i] = Math.toIntExact(Math.floorDiv(end - 1, period) - firstSteps[i] + 1);
+            offsets[i] = offset;
+            offset += (long) steps[i] * HASH_BYTES;
+        }
+
+        byte[] salt = new byte[SALT_BYTES];
+        new SecureRandom().nextBytes(salt);
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer head = ByteBuffer.allocate(Math.toIntExact(HEADER_BYTES + (long) INDEX_BYTES * count));
+            head.putInt(MAGIC).putInt(VERSION).put(salt).putLong(start).putLong(end).putInt(count);
+            head.position(HEADER_BYTES);
+            for (int i = 0; i < count; i++) {
+                head.putInt(entries.get(i).getDbId())
+                        .putInt(entries.get(i).getPeriod())
+                        .putLong(firstSteps[i])
+                        .putInt(steps[i])
+                        .putLong(offsets[i])
+                        .putInt(entries.get(i).getDigits());
+            }
+            writeFully(out, head.flip(), 0);
+            IntStream.range(0, count).parallel().forEach(i -> {
+                OTPURI otpuri = entries.get(i);
+                long period = otpuri.getPeriod() * 1000L;
+                ByteBuffer block = ByteBuffer.allocate(Math.min(steps[i], BLOCK_STEPS) * HASH_BYTES);
+                for (int done = 0; done < steps[i]; ) {
+                    int n = Math.min(steps[i] - done, BLOCK_STEPS);
+                    block.clear();
+                    for (int s = 0; s < n; s++) {
+                        long step = firstSteps[i] + done + s;
+                        block.putInt(hash(salt, otpuri.getDbId(), step, otpuri.getOTP(step * period)));
+                    }
+                    try {
+                        writeFully(out, block.flip(), offsets[i] + (long) done * HASH_BYTES);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    done += n;
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Opens a code table that was written with export().
+     *
+     * @param file - Path
+     * @return - CodeTable
+     * @throws IOException - if the file cannot be read or is not a code table
+     */
+    public static CodeTable open(Path file) throws IOException {
+        return open(file, CHUNK_BITS);
+    }
+
+    static CodeTable open(Path file, int chunkBits) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new CodeTable(channel, chunkBits);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Checks if the code is the One Time Password of the entry with the given dbId at the given time.
+     *
+     * @param dbId - int
+     * @param code - int
+     * @param time - long (milliseconds)
+     * @return - false if the code is wrong, or if the entry or the time is not in the table
+     */
+    public boolean verify(int dbId, int code, long time) {
+        return verify(dbId, code, 0, time);
+    }
+
+    /**
+     * @param digits - int (the number of digits that were typed, or 0 to accept any)
+     */
+    private boolean verify(int dbId, int code, int digits, long time) {
+        if (time < start || time >= end) {
+            return false;
+        }
+        int low = 0;
+        int high = entryCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long position = HEADER_BYTES + (long) mid * INDEX_BYTES;
+            int midId = getInt(position);
+            if (midId < dbId) {
+                low = mid + 1;
+            }
+            else if (midId > dbId) {
+                high = mid - 1;
+            }
+            else {
+                if (digits != 0 && digits != getInt(position + 28)) {
+                    return false;
+                }
+                long period = getInt(position + 4) * 1000L;
+                long index = Math.floorDiv(time, period) - getLong(position + 8);
+                if (index < 0 || index >= getInt(position + 16)) {
+                    return false;
+                }
+                long step = getLong(position + 8) + index;
+                int stored = getInt(getLong(position + 20) + index * HASH_BYTES);
+                return stored == hash(salt, dbId, step, code);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Same as verify(int, int, long) for a code as it was typed in, with or without the dash. The code must
+     * have as many digits as the entry, so leading zeros are not dropped or added.
+     *
+     * @param dbId - int
+     * @param code - String
+     * @param time - long (milliseconds)
+     * @return - boolean
+     */
+    public boolean verify(int dbId, String code, long time) {
+        String digits = code.replace("-", "").trim();
+        if (digits.isEmpty() || digits.length() > 8 || !digits.chars().allMatch(Character::isDigit)) {
+            return false;
+        }
+        return verify(dbId, Integer.parseInt(digits), digits.length(), time);
+    }
+
+    /**
+     * gets the first moment that is covered by the table
+     *
+     * @return - long (milliseconds)
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * gets the moment the table stops covering (exclusive)
+     *
+     * @return - long (milliseconds)
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * gets the number of entries in the table
+     *
+     * @return - int
+     */
+    public int size() {
+        return entryCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int getInt(long position) {
+        return chunks[(int) (position >>> chunkBits)].getInt((int) (position & chunkMask));
+    }
+
+    private long getLong(long position) {
+        return chunks[(int) (position >>> chunkBits)].getLong((int) (position & chunkMask));
+    }
+
+    private static int hash(byte[] salt, int dbId, long step, int code) {
+        MessageDigest md = sha256.get();
+        md.update(salt);
+        md.update(ByteBuffer.allocate(16).putInt(dbId).putLong(step).putInt(code).array());
+        byte[] digest = md.digest();
+        return ((digest[0] & 0xFF) << 24) | ((digest[1] & 0xFF) << 16) | ((digest[2] & 0xFF) << 8) | (digest[3] & 0xFF);
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += out.write(buffer, position);
+        }
+    }
+}
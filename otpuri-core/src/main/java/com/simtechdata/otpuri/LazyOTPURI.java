@@ -0,0 +1,292 @@
+package com.simtechdata.otpuri;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A lightweight stand-in for an OTPURI that holds on to the raw OTPAuth String and only parses the parts
+ * of it that are actually asked for. This makes it cheap to load a large number of OTPAuth Strings when
+ * most of them will only ever be counted, listed or filtered by a single field.
+ * <p>
+ * The individual getters return the same values a fully built OTPURI would. Anything that needs the whole
+ * object (the OTPAuth String itself, the One Time Password, etc.) goes through get(), which builds the
+ * OTPURI once and then keeps it.
+ */
+public class LazyOTPURI {
+
+    private static final String resource = "otpauth://";
+
+    private final int dbId;
+    private final String otpAuthString;
+    private final Assume assume;
+    private volatile String label;
+    private volatile String parameters;
+    private volatile OTPURI otpuri;
+    private volatile boolean built;
+
+    /**
+     * Constructor where you can pass in the OTPAuth code retrieved from a QR code
+     *
+     * @param otpAuthString - OTPAuth String from QR Code
+     */
+    public LazyOTPURI(String otpAuthString) {
+        this(0, otpAuthString, Assume.USERNAME);
+    }
+
+    /**
+     * Same as LazyOTPURI(String) with the id number of the auth string in your database.
+     *
+     * @param dbId          - int
+     * @param otpAuthString - OTPAuth String from QR Code
+     */
+    public LazyOTPURI(int dbId, String otpAuthString) {
+        this(dbId, otpAuthString, Assume.USERNAME);
+    }
+
+    /**
+     * Same as LazyOTPURI(int, String) where you can also chose what a single Label element is assumed to be.
+     *
+     * @param dbId          - int
+     * @param otpAuthString - OTPAuth String from QR Code
+     * @param assume        - Assume
+     */
+    public LazyOTPURI(int dbId, String otpAuthString, Assume assume) {
+        this.dbId = dbId;
+        this.otpAuthString = otpAuthString;
+        this.assume = assume;
+    }
+
+    /**
+     * Builds the OTPURI the first time it is called and returns that same instance from then on.
+     *
+     * @return - OTPURI, or null if the OTPAuth String has no secret
+     */
+    public OTPURI get() {
+        if (!built) {
+            synchronized (this) {
+                if (!built) {
+                    otpuri = new OTPURI.Builder(dbId, otpAuthString).assume(assume).build();
+                    built = true;
+                }
+            }
+        }
+        return otpuri;
+    }
+
+    /**
+     * Tells you if the OTPAuth String has already been fully parsed.
+     *
+     * @return - boolean
+     */
+    public boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * Optional database ID that was passed into the constructor.
+     *
+     * @return - int
+     */
+    public int getDbId() {
+        return dbId;
+    }
+
+    /**
+     * gets the OTPAuth String exactly as it was passed in
+     *
+     * @return - String
+     */
+    public String getRawString() {
+        return otpAuthString;
+    }
+
+    /**
+     * gets the Issuer from the OTPAuth String. When neither the Label nor the parameters name an issuer,
+     * the OTPURI is built so that you get the same made up company name that it has.
+     *
+     * @return - String
+     */
+    public String getIssuer() {
+        if (built) {
+            return (otpuri == null) ? "" : otpuri.getIssuer();
+        }
+        String issuer = parameter("issuer");
+        if (issuer.isEmpty()) {
+            issuer = labelPart(OTPParts.LABEL_ISSUER);
+        }
+        if (issuer.isEmpty()) {
+            OTPURI full = get();
+            return (full == null) ? "" : full.getIssuer();
+        }
+        return issuer;
+    }
+
+    /**
+     * gets the account name portion of the OTPAuth
+     *
+     * @return - String
+     */
+    public String getLabelAccount() {
+        if (built) {
+            return (otpuri == null) ? "" : otpuri.getLabelAccount();
+        }
+        String account = labelPart(OTPParts.LABEL_ACCOUNT);
+        return account.isEmpty() ? "UnknownUsername" : account;
+    }
+
+    /**
+     * gets the secret key used to generate the synchronized One Time Password
+     *
+     * @return - String (empty if the OTPAuth String has no secret)
+     */
+    public String getSecret() {
+        if (built) {
+            return (otpuri == null) ? "" : otpuri.getSecret();
+        }
+        return parameter("secret");
+    }
+
+    /**
+     * gets the algorithm from the OTPAuth String
+     *
+     * @return - Algorithm
+     */
+    public Algorithm getAlgorithm() {
+        if (built) {
+            return (otpuri == null) ? Algorithm.SHA1 : otpuri.getAlgorithm();
+        }
+        String algorithm = parameter("algorithm");
+        return algorithm.isEmpty() ? Algorithm.SHA1 : Algorithm.getAlgorithm(algorithm.toUpperCase());
+    }
+
+    /**
+     * gets the number of digits that the One Time Password algorithm should generate
+     *
+     * @return - int (6, 7 or 8)
+     */
+    public int getDigits() {
+        if (built && otpuri != null) {
+            return otpuri.getDigits();
+        }
+        String digits = parameter("digits");
+        return digits.isEmpty() ? 6 : Integer.parseInt(digits);
+    }
+
+    /**
+     * gets the period of time when the user can enter the One Time Password before the password expires
+     *
+     * @return - int (15, 30 or 60)
+     */
+    public int getPeriod() {
+        if (built && otpuri != null) {
+            return otpuri.getPeriod();
+        }
+        String period = parameter("period");
+        return period.isEmpty() ? 30 : Integer.parseInt(period);
+    }
+
+    /**
+     * Overriden toString which will return the HTML formatted version of the OTPAuth String
+     *
+     * @return - String
+     */
+    @Override
+    public String toString() {
+        OTPURI full = get();
+        return (full == null) ? "" : full.toString();
+    }
+
+    /**
+     * Picks one part out of the Label following the same rules the Builder uses.
+     */
+    private String labelPart(OTPParts part) {
+        String first = label();
+        if (first.contains("(") && first.contains(")")) {
+            int open = first.lastIndexOf('(');
+            int close = first.lastIndexOf(')');
+            if (close != first.length() - 1 || open < 1 || close - open < 2) {
+                return "";
+            }
+            return (part == OTPParts.LABEL_ISSUER) ? first.substring(open + 1, close) : first.substring(0, open);
+        }
+        int colon = first.indexOf(':');
+        if (colon >= 0) {
+            int end = first.indexOf(':', colon + 1);
+            return (part == OTPParts.LABEL_ISSUER) ? first.substring(0, colon) : first.substring(colon + 1, (end < 0) ? first.length() : end);
+        }
+        if (first.length() > 2) {
+            boolean single = (assume == Assume.ISSUER) ? part == OTPParts.LABEL_ISSUER : part == OTPParts.LABEL_ACCOUNT;
+            return single ? first : "";
+        }
+        return "";
+    }
+
+    /**
+     * Finds a single parameter without splitting up the whole parameter section. When a parameter is given
+     * more than once, the last one counts, just like it does in the Builder.
+     */
+    private String parameter(String name) {
+        String params = parameters();
+        String value = "";
+        int start = 0;
+        while (start < params.length()) {
+            int end = params.indexOf('&', start);
+            if (end < 0) {
+                end = params.length();
+            }
+            int equals = params.indexOf('=', start);
+            if (equals > start && equals < end && equals - start == name.length() && params.regionMatches(true, start, name, 0, name.length())) {
+                int valueEnd = params.indexOf('=', equals + 1);
+                value = params.substring(equals + 1, (valueEnd < 0 || valueEnd > end) ? end : valueEnd);
+            }
+            start = end + 1;
+        }
+        return value;
+    }
+
+    private String label() {
+        if (label == null) {
+            split();
+        }
+        return label;
+    }
+
+    private String parameters() {
+        if (parameters == null) {
+            split();
+        }
+        return parameters;
+    }
+
+    private void split() {
+        String first = "";
+        String last = "";
+        int start = otpAuthString.indexOf(resource);
+        if (start >= 0) {
+            start += resource.length();
+            if (otpAuthString.startsWith("totp", start) || otpAuthString.startsWith("hotp", start)) {
+                start += 4;
+            }
+            if (otpAuthString.startsWith("/", start)) {
+                start++;
+            }
+            int question = otpAuthString.indexOf('?', start);
+            if (question < 0) {
+                first = decode(otpAuthString.substring(start));
+            }
+            else {
+                first = decode(otpAuthString.substring(start, question));
+                last = decode(otpAuthString.substring(question + 1));
+            }
+        }
+        parameters = last;
+        label = first;
+    }
+
+    private String decode(String value) {
+        if (value.indexOf('%') < 0 && value.indexOf('+') < 0) {
+            return value;
+        }
+        return URLDecoder.decode(value, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,54 @@
+package com.simtechdata.otpuri;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A SyncTransport that talks straight to another MerkleVault in the same process. Entries are copied on
+ * the way out, so the two vaults never share an OTPURI instance.
+ */
+public class LocalSyncTransport implements SyncTransport {
+
+    private final MerkleVault vault;
+    private long roundTrips;
+
+    /**
+     * @param vault - the MerkleVault on the other side
+     */
+    public LocalSyncTransport(MerkleVault vault) {
+        this.vault = vault;
+    }
+
+    @Override
+    public int depth() {
+        return vault.getDepth();
+    }
+
+    @Override
+    public byte[][] nodeHashes(int[] nodes) {
+        roundTrips++;
+        return vault.nodeHashes(nodes);
+    }
+
+    @Override
+    public Map<Integer, byte[]> entryDigests(int[] leaves) {
+        roundTrips++;
+        return vault.entryDigests(leaves);
+    }
+
+    @Override
+    public List<OTPURI> fetch(int[] dbIds) {
+        roundTrips++;
+        return vault.copies(dbIds);
+    }
+
+    /**
+     * The number of requests that went through this transport, which is handy for seeing how much
+     * a sync actually cost.
+     *
+     * @return - long
+     */
+    public long getRoundTrips() {
+        return roundTrips;
+    }
+}
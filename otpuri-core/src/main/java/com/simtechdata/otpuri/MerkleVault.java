@@ -0,0 +1,334 @@
+package com.simtechdata.otpuri;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * A collection of OTPURI entries, keyed by their dbId, that can be kept in sync with another replica by
+ * transferring only the entries that differ.
+ * <p>
+ * Every entry is hashed (SHA-256 over its OTPAuth String, login fields and notes) and each dbId falls into
+ * one leaf of a Merkle tree. A leaf hash is the XOR of the digests of its entries, so adding, changing or
+ * removing an entry only touches its own leaf and the nodes above it. When two replicas sync, they walk
+ * the trees down from the root and only look deeper where the hashes are different, which means the cost
+ * of a sync grows with the number of changed entries and not with the size of the vault.
+ * <p>
+ * OTPURI objects are mutable, so when you change an entry that is already in the vault, put() it again so
+ * that the tree picks up the change.
+ */
+public class MerkleVault {
+
+    private static final int DIGEST_LENGTH = 32;
+    private static final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    });
+
+    private final int depth;
+    private final int leafCount;
+    private final byte[][] nodes;
+    private final Map<Integer, OTPURI> entries = new HashMap<>();
+    private final Map<Integer, byte[]> digests = new HashMap<>();
+    private final Map<Integer, Set<Integer>> leafMembers = new HashMap<>();
+
+    /**
+     * Default Constructor, which uses a tree with 1024 leaves.
+     */
+    public MerkleVault() {
+        this(10);
+    }
+
+    /**
+     * Use a tree with 2^depth leaves. Both sides of a sync must use the same depth. A deeper tree narrows
+     * down the changed entries more precisely at the cost of a few more hashes per change.
+     *
+     * @param depth - int (1 to 24)
+     */
+    public MerkleVault(int depth) {
+        if (depth < 1 || depth > 24) {
+            throw new IllegalArgumentException("depth must be between 1 and 24");
+        }
+        this.depth = depth;
+        this.leafCount = 1 << depth;
+        this.nodes = new byte[leafCount * 2][];
+        for (int node = leafCount; node < leafCount * 2; node++) {
+            nodes[node] = new byte[DIGEST_LENGTH];
+        }
+        for (int node = leafCount - 1; node > 0; node--) {
+            nodes[node] = hashChildren(node);
+        }
+    }
+
+    /**
+     * Adds the entry, or replaces the entry that has the same dbId.
+     *
+     * @param otpuri - an OTPURI instance
+     */
+    public synchronized void put(OTPURI otpuri) {
+        int leaf = store(otpuri);
+        updatePath(leafCount + leaf);
+    }
+
+    /**
+     * Adds or replaces all entries, and rehashes each changed part of the tree only once.
+     *
+     * @param otpuris - Collection of OTPURI
+     */
+    public synchronized void putAll(Collection<OTPURI> otpuris) {
+        BitSet dirty = new BitSet(leafCount);
+        for (OTPURI otpuri : otpuris) {
+            dirty.set(store(otpuri));
+        }
+        rehash(dirty);
+    }
+
+    /**
+     * Removes the entry with the given dbId.
+     *
+     * @param dbId - int
+     * @return - the OTPURI that was removed, or null if there was none
+     */
+    public synchronized OTPURI remove(int dbId) {
+        OTPURI removed = entries.remove(dbId);
+        if (removed != null) {
+            int leaf = leafOf(dbId);
+            xor(nodes[leafCount + leaf], digests.remove(dbId));
+            Set<Integer> members = leafMembers.get(leaf);
+            members.remove(dbId);
+            if (members.isEmpty()) {
+                leafMembers.remove(leaf);
+            }
+            updatePath(leafCount + leaf);
+        }
+        return removed;
+    }
+
+    /**
+     * gets the entry with the given dbId
+     *
+     * @param dbId - int
+     * @return - OTPURI, or null if there is none
+     */
+    public synchronized OTPURI get(int dbId) {
+        return entries.get(dbId);
+    }
+
+    /**
+     * gets a snapshot of all entries in the vault
+     *
+     * @return - List of OTPURI
+     */
+    public synchronized List<OTPURI> getAll() {
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * gets the number of entries in the vault
+     *
+     * @return - int
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * gets the depth of the tree
+     *
+     * @return - int
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * gets the hash at the top of the tree. Two vaults with the same root hash hold the same entries.
+     *
+     * @return - byte[]
+     */
+    public synchronized byte[] getRootHash() {
+        return nodes[1].clone();
+    }
+
+    /**
+     * Makes this vault hold the same entries as the replica on the other side of the transport.
+     * Entries that only exist here are removed, and entries that are missing or different here are
+     * fetched from the other side. Nothing is sent back, so for two way replication each side pulls
+     * from the other with its own rules for which changes win.
+     *
+     * @param remote - SyncTransport
+     * @return - SyncResult
+     */
+    public SyncResult pull(SyncTransport remote) {
+        if (remote.depth() != depth) {
+            throw new IllegalStateException("Both vaults must use the same tree depth (" + depth + " here, " + remote.depth() + " remote)");
+        }
+        int nodesCompared = 0;
+        List<Integer> changedLeaves = new ArrayList<>();
+        int[] frontier = {1};
+        while (frontier.length > 0) {
+            byte[][] remoteHashes = remote.nodeHashes(frontier);
+            byte[][] localHashes = nodeHashes(frontier);
+            nodesCompared += frontier.length;
+            List<Integer> next = new ArrayList<>();
+            for (int i = 0; i < frontier.length; i++) {
+                if (Arrays.equals(remoteHashes[i], localHashes[i])) {
+                    continue;
+                }
+                int node = frontier[i];
+                if (node >= leafCount) {
+                    changedLeaves.add(node - leafCount);
+                }
+                else {
+                    next.add(node * 2);
+                    next.add(node * 2 + 1);
+                }
+            }
+            frontier = next.stream().mapToInt(Integer::intValue).toArray();
+        }
+        if (changedLeaves.isEmpty()) {
+            return new SyncResult(nodesCompared, 0, 0, 0);
+        }
+
+        int[] leaves = changedLeaves.stream().mapToInt(Integer::intValue).toArray();
+        Map<Integer, byte[]> remoteDigests = remote.entryDigests(leaves);
+        Map<Integer, byte[]> localDigests = entryDigests(leaves);
+        List<Integer> wanted = new ArrayList<>();
+        for (Map.Entry<Integer, byte[]> entry : remoteDigests.entrySet()) {
+            if (!Arrays.equals(entry.getValue(), localDigests.get(entry.getKey()))) {
+                wanted.add(entry.getKey());
+            }
+        }
+        List<OTPURI> fetched = wanted.isEmpty() ? List.of() : remote.fetch(wanted.stream().mapToInt(Integer::intValue).toArray());
+        putAll(fetched);
+        int removed = 0;
+        for (Integer dbId : localDigests.keySet()) {
+            if (!remoteDigests.containsKey(dbId) && remove(dbId) != null) {
+                removed++;
+            }
+        }
+        return new SyncResult(nodesCompared, leaves.length, fetched.size(), removed);
+    }
+
+    /**
+     * gets the hashes of the tree nodes with the given indexes, in the same order.
+     *
+     * @param nodeIndexes - int[]
+     * @return - byte[][]
+     */
+    public synchronized byte[][] nodeHashes(int[] nodeIndexes) {
+        byte[][] hashes = new byte[nodeIndexes.length][];
+        for (int i = 0; i < nodeIndexes.length; i++) {
+            hashes[i] = nodes[nodeIndexes[i]].clone();
+        }
+        return hashes;
+    }
+
+    /**
+     * gets the digest of every entry that falls into the given leaves, keyed by dbId.
+     *
+     * @param leaves - int[]
+     * @return - Map of dbId to digest
+     */
+    public synchronized Map<Integer, byte[]> entryDigests(int[] leaves) {
+        Map<Integer, byte[]> map = new HashMap<>();
+        for (int leaf : leaves) {
+            for (Integer dbId : leafMembers.getOrDefault(leaf, Set.of())) {
+                map.put(dbId, digests.get(dbId).clone());
+            }
+        }
+        return map;
+    }
+
+    /**
+     * gets copies of the entries with the given dbIds, skipping the ones that are not in the vault.
+     *
+     * @param dbIds - int[]
+     * @return - List of OTPURI
+     */
+    public synchronized List<OTPURI> copies(int[] dbIds) {
+        List<OTPURI> list = new ArrayList<>(dbIds.length);
+        for (int dbId : dbIds) {
+            OTPURI otpuri = entries.get(dbId);
+            if (otpuri != null) {
+                list.add(new OTPURI.Builder(otpuri).build());
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Hashes an entry the same way on every replica.
+     *
+     * @param otpuri - an OTPURI instance
+     * @return - byte[] (SHA-256)
+     */
+    public static byte[] digest(OTPURI otpuri) {
+        String canonical = otpuri.getDbId() + "\u0000" +
+                otpuri + "\u0000" +
+                otpuri.getLoginURL() + "\u0000" +
+                otpuri.getLoginUsername() + "\u0000" +
+                otpuri.getLoginPassword() + "\u0000" +
+                ((otpuri.getNotes() == null) ? "" : otpuri.getNotes());
+        return sha256.get().digest(canonical.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int store(OTPURI otpuri) {
+        int dbId = otpuri.getDbId();
+        int leaf = leafOf(dbId);
+        byte[] digest = digest(otpuri);
+        byte[] old = digests.put(dbId, digest);
+        if (old != null) {
+            xor(nodes[leafCount + leaf], old);
+        }
+        xor(nodes[leafCount + leaf], digest);
+        entries.put(dbId, otpuri);
+        leafMembers.computeIfAbsent(leaf, k -> new HashSet<>()).add(dbId);
+        return leaf;
+    }
+
+    private void updatePath(int node) {
+        for (int parent = node / 2; parent > 0; parent /= 2) {
+            nodes[parent] = hashChildren(parent);
+        }
+    }
+
+    private void rehash(BitSet dirtyLeaves) {
+        BitSet dirty = new BitSet(leafCount);
+        for (int leaf = dirtyLeaves.nextSetBit(0); leaf >= 0; leaf = dirtyLeaves.nextSetBit(leaf + 1)) {
+            dirty.set((leafCount + leaf) / 2);
+        }
+        while (!dirty.isEmpty()) {
+            BitSet parents = new BitSet(leafCount);
+            for (int node = dirty.nextSetBit(0); node >= 0; node = dirty.nextSetBit(node + 1)) {
+                nodes[node] = hashChildren(node);
+                if (node > 1) {
+                    parents.set(node / 2);
+                }
+            }
+            dirty = parents;
+        }
+    }
+
+    private byte[] hashChildren(int node) {
+        MessageDigest md = sha256.get();
+        md.update(nodes[node * 2]);
+        md.update(nodes[node * 2 + 1]);
+        return md.digest();
+    }
+
+    private int leafOf(int dbId) {
+        int h = dbId * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (leafCount - 1);
+    }
+
+    private static void xor(byte[] target, byte[] value) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] ^= value[i];
+        }
+    }
+}
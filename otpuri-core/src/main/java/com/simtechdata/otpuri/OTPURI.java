@@ -1,21 +1,16 @@
 package com.simtechdata.otpuri;
 
-import com.google.zxing.*;
-import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
-import com.google.zxing.common.HybridBinarizer;
-import com.warrenstrange.googleauth.GoogleAuthenticator;
-
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -25,11 +20,13 @@ public class OTPURI {
 
     private static final String resource = "otpauth";
     private static final String protocol = "totp";
+    private static final StringDictionary dictionary = StringDictionary.shared();
+    private static final String placeholderIssuer = "Unknown Company ";
     private final int dbId;
-    private String labelIssuer;
+    private int labelIssuer; //Id in the shared StringDictionary, see issuerId()
     private String labelAccount;
     private String paramSecret;
-    private String paramIssuer;
+    private int paramIssuer; //Id in the shared StringDictionary, see issuerId()
     private Algorithm paramAlgorithm; //Options: SHA1, SHA256, SHA512; default = SHA1
     private String paramDigits; //Number of digits to return, default = 6
     private String paramPeriod; //In Seconds, default = 30
@@ -37,7 +34,7 @@ public class OTPURI {
     private String loginUsername;
     private String loginPassword;
     private String notes;
-    private final GoogleAuthenticator gAuth;
+    private Clock clock;
 
     /**
      * Builder class
@@ -71,15 +68,18 @@ public class OTPURI {
          */
         public Builder(OTPURI otpuri) {
             this.dbId = otpuri.dbId;
-            this.labelIssuer = otpuri.labelIssuer;
+            this.labelIssuer = issuerName(otpuri.labelIssuer);
             this.labelAccount = otpuri.labelAccount;
             this.paramSecret = otpuri.paramSecret;
-            this.paramIssuer = otpuri.paramIssuer;
+            this.paramIssuer = issuerName(otpuri.paramIssuer);
             this.paramAlgorithm = otpuri.paramAlgorithm;
             this.paramDigits = otpuri.paramDigits;
             this.paramPeriod = otpuri.paramPeriod;
             this.loginURL = otpuri.loginURL;
+            this.loginUsername = otpuri.loginUsername;
+            this.loginPassword = otpuri.loginPassword;
             this.notes = otpuri.notes;
+            this.clock = otpuri.clock;
         }
         private String[] parseData(String data) {
             String[] parsed = new String[2];
@@ -170,6 +170,7 @@ public class OTPURI {
         private String notes = "";
         private boolean setFromAuthString = false;
         private Assume assume = Assume.USERNAME;
+        private Clock clock = Clock.systemUTC();
         private int dbId;
 
         /**
@@ -343,6 +344,19 @@ public class OTPURI {
             return this;
         }
 
+        /**
+         * Set the clock that the One Time Password methods without a time argument read the current time from.
+         * The default is the system clock. Pass in a CoarseClock to share one cached time between many
+         * instances, or a fixed clock when you need to control time.
+         *
+         * @param clock - Clock
+         * @return Builder
+         */
+        public Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
         /**
          * This returns the OTPURI class that has been built with this Builder class
          *
@@ -390,18 +404,17 @@ public class OTPURI {
         }
 
         private String randomCompany() {
-            Random random = new Random(System.currentTimeMillis());
-            int num = random.nextInt(1000, 9998);
+            int num = ThreadLocalRandom.current().nextInt(1000, 9998);
             return "Unknown Company " + num;
         }
     }
 
     private OTPURI(Builder build) {
         this.dbId = build.dbId;
-        this.labelIssuer = build.labelIssuer;
+        this.labelIssuer = issuerId(build.labelIssuer);
         this.labelAccount = build.labelAccount;
         this.paramSecret = build.paramSecret;
-        this.paramIssuer = build.paramIssuer;
+        this.paramIssuer = issuerId(build.paramIssuer);
         this.paramAlgorithm = build.paramAlgorithm;
         this.paramDigits = build.paramDigits;
         this.paramPeriod = build.paramPeriod;
@@ -409,37 +422,29 @@ public class OTPURI {
         this.loginUsername = build.loginUsername;
         this.loginPassword = build.loginPassword;
         this.notes = build.notes;
-        this.gAuth = new GoogleAuthenticator();
+        this.clock = build.clock;
     }
 
-    public static OTPURI fromImage(File qrCodeFile) throws NotFoundException, IOException {
-        String otpAuth = decodeBufferedQRImage(qrCodeFile);
-        OTPURI otpuri = null;
-        if (!otpAuth.isEmpty()) {
-            otpuri = new OTPURI.Builder(otpAuth).build();
+    /**
+     * Issuers are kept in the shared StringDictionary, except for the placeholders that SecretProvisioner
+     * gives to every entry ("Unknown Company " followed by a number from 10000 on). Those are unique to every
+     * entry and would stay in the dictionary forever, so the number is kept as a negative id instead.
+     */
+    private static int issuerId(String issuer) {
+        if (issuer != null && issuer.startsWith(placeholderIssuer)) {
+            String number = issuer.substring(placeholderIssuer.length());
+            if (number.length() >= 5 && number.length() <= 10 && number.charAt(0) != '0' && number.chars().allMatch(c -> c >= '0' && c <= '9')) {
+                long value = Long.parseLong(number);
+                if (value <= Integer.MAX_VALUE) {
+                    return (int) -value;
+                }
+            }
         }
-        return otpuri;
+        return dictionary.intern(issuer);
     }
 
-    private static String decodeBufferedQRImage(File qrCodeFile) throws IOException, NotFoundException {
-        Result result;
-        BufferedImage bufferedImage = ImageIO.read(qrCodeFile);
-        LuminanceSource source = new BufferedImageLuminanceSource(bufferedImage);
-        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
-        result = new MultiFormatReader().decode(bitmap);
-        return (result == null) ? "" : result.getText();
-    }
-
-    private static String decodeBufferedQRImage(BufferedImage bufferedImage) {
-        Result result;
-        try {
-            LuminanceSource source = new BufferedImageLuminanceSource(bufferedImage);
-            BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
-            result = new MultiFormatReader().decode(bitmap);
-        } catch (NotFoundException e) {
-            return "";
-        }
-        return (result == null) ? "" : result.getText();
+    private static String issuerName(int id) {
+        return (id < 0) ? placeholderIssuer + -(long) id : dictionary.get(id);
     }
 
     private String cleanSecret() {
@@ -454,10 +459,11 @@ public class OTPURI {
     }
 
     private String getLabel() {
-        return "/" + labelIssuer + ":" + labelAccount;
+        return "/" + issuerName(labelIssuer) + ":" + labelAccount;
     }
 
     private String getParameters() {
+        String paramIssuer = issuerName(this.paramIssuer);
         return "secret=" + cleanSecret() +
                 ((paramIssuer.isEmpty()) ? paramIssuer : "&issuer=" + paramIssuer) +
                 ((paramAlgorithm.get().isEmpty()) ? paramAlgorithm : "&algorithm=" + paramAlgorithm) +
@@ -465,6 +471,10 @@ public class OTPURI {
                 ((paramPeriod.isEmpty()) ? paramPeriod : "&period=" + paramPeriod);
     }
 
+    private int password(long time) {
+        return TOTP.getPassword(this.paramSecret, time, paramAlgorithm, Integer.parseInt(paramDigits), Integer.parseInt(paramPeriod));
+    }
+
     private String zeroPadding(String otpString) {
         int digits = Integer.parseInt(paramDigits);
         int delta = digits - otpString.length();
@@ -516,6 +526,54 @@ public class OTPURI {
         return this.getSecret().equals(otpuri.getSecret());
     }
 
+    /**
+     * Tells you if two OTPURI objects have the same issuer. Issuers are kept in a shared dictionary,
+     * so this is a comparison of two numbers rather than two Strings.
+     *
+     * @param otpuri - an OTPURI instance
+     * @return - true if this issuer is same as instance
+     */
+    public boolean sameIssuer(OTPURI otpuri) {
+        int issuer = (this.labelIssuer == 0) ? this.paramIssuer : this.labelIssuer;
+        int other = (otpuri.labelIssuer == 0) ? otpuri.paramIssuer : otpuri.labelIssuer;
+        return issuer == other;
+    }
+
+    /**
+     * Tells you if two OTPURI objects have the same account name.
+     *
+     * @param otpuri - an OTPURI instance
+     * @return - true if this account name is same as instance
+     */
+    public boolean sameAccount(OTPURI otpuri) {
+        return this.labelAccount.equals(otpuri.labelAccount);
+    }
+
+    /**
+     * Estimates how much memory the issuers of the entries take up in the shared StringDictionary, compared
+     * to every entry keeping its own copy of its issuer.
+     *
+     * @param otpuris - Collection of OTPURI
+     * @return - StringDictionary.MemoryReport
+     */
+    public static StringDictionary.MemoryReport getIssuerMemoryReport(Collection<OTPURI> otpuris) {
+        BitSet seen = new BitSet();
+        long dictionaryBytes = 0;
+        long undedupedBytes = 0;
+        for (OTPURI otpuri : otpuris) {
+            int[] ids = (otpuri.labelIssuer == otpuri.paramIssuer) ? new int[]{otpuri.labelIssuer} : new int[]{otpuri.labelIssuer, otpuri.paramIssuer};
+            for (int id : ids) {
+                long bytes = StringDictionary.estimateBytes(issuerName(id));
+                undedupedBytes += bytes;
+                if (id >= 0 && !seen.get(id)) {
+                    seen.set(id);
+                    dictionaryBytes += bytes + StringDictionary.ENTRY_BYTES;
+                }
+            }
+        }
+        return new StringDictionary.MemoryReport(seen.cardinality(), otpuris.size(), dictionaryBytes, undedupedBytes);
+    }
+
     /**
      * Optional database ID that you can set on this object.
      *
@@ -568,7 +626,7 @@ public class OTPURI {
      * @return - String
      */
     public String getIssuer() {
-        return (labelIssuer.isEmpty() ? paramIssuer : labelIssuer);
+        return issuerName((labelIssuer == 0) ? paramIssuer : labelIssuer);
     }
 
     /**
@@ -577,7 +635,7 @@ public class OTPURI {
      * @return - String
      */
     public String getLabelIssuer() {
-        return labelIssuer;
+        return issuerName(labelIssuer);
     }
 
     /**
@@ -586,7 +644,7 @@ public class OTPURI {
      * @return - String
      */
     public String getParamIssuer() {
-        return paramIssuer;
+        return issuerName(paramIssuer);
     }
 
     /**
@@ -631,7 +689,7 @@ public class OTPURI {
      * @return - String
      */
     public String getOTPString() {
-        return zeroPadding(String.valueOf(gAuth.getTotpPassword(this.paramSecret)));
+        return zeroPadding(String.valueOf(password(clock.millis())));
     }
 
     /**
@@ -641,7 +699,7 @@ public class OTPURI {
      * @return - String
      */
     public String getOTPString(long time) {
-        return zeroPadding(String.valueOf(gAuth.getTotpPassword(this.paramSecret, time)));
+        return zeroPadding(String.valueOf(password(time)));
     }
 
     /**
@@ -650,7 +708,7 @@ public class OTPURI {
      * @return - String
      */
     public String getOTPSplit() {
-        String otpString = zeroPadding(String.valueOf(gAuth.getTotpPassword(this.paramSecret)));
+        String otpString = zeroPadding(String.valueOf(password(clock.millis())));
         return splitOTP(otpString);
     }
 
@@ -660,7 +718,7 @@ public class OTPURI {
      * @return - String
      */
     public String getOTPSplit(long time) {
-        String otpString = zeroPadding(String.valueOf(gAuth.getTotpPassword(this.paramSecret, time)));
+        String otpString = zeroPadding(String.valueOf(password(time)));
         return splitOTP(otpString);
     }
 
@@ -691,6 +749,15 @@ public class OTPURI {
         return (loginPassword != null && !loginPassword.isEmpty()) ? loginPassword : "";
     }
 
+    /**
+     * gets the clock that the One Time Password methods without a time argument read the current time from.
+     *
+     * @return - Clock
+     */
+    public Clock getClock() {
+        return clock;
+    }
+
     /**
      * gets whatever text is currently in the assigned notes for the object.
      *
@@ -706,7 +773,7 @@ public class OTPURI {
      * @param issuer - String
      */
     public void setLabelIssuer(String issuer) {
-        this.labelIssuer = issuer;
+        this.labelIssuer = issuerId(issuer);
     }
 
     /**
@@ -733,7 +800,7 @@ public class OTPURI {
      * @param issuer - String
      */
     public void setParamIssuer(String issuer) {
-        this.paramIssuer = issuer;
+        this.paramIssuer = issuerId(issuer);
     }
 
     /**
@@ -801,14 +868,23 @@ public class OTPURI {
         this.notes = notes;
     }
 
+    /**
+     * Use this to set the clock that the One Time Password methods without a time argument read the current time from.
+     *
+     * @param clock - Clock
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
     /**
      * Use this to set BOTH the issuer for the Label and the Parameter
      *
      * @param issuer - String
      */
     public void setIssuer(String issuer) {
-        this.labelIssuer = issuer;
-        this.paramIssuer = issuer;
+        this.labelIssuer = issuerId(issuer);
+        this.paramIssuer = this.labelIssuer;
     }
 
     /**
@@ -817,7 +893,7 @@ public class OTPURI {
      * @return - int
      */
     public int getOTP() {
-        return gAuth.getTotpPassword(this.paramSecret);
+        return password(clock.millis());
     }
 
     /**
@@ -827,7 +903,41 @@ public class OTPURI {
      * @return - int
      */
     public int getOTP(long time) {
-        return gAuth.getTotpPassword(this.paramSecret, time);
+        return password(time);
+    }
+
+    /**
+     * gets the One Time Password of every entry at one instant. The clock is read once for the whole batch,
+     * so every code comes from the same time step even when the clock ticks over a step boundary while the
+     * batch runs.
+     *
+     * @param otpuris - List of OTPURI
+     * @param clock   - Clock (for example a CoarseClock shared by the entries)
+     * @return - int[] (in the same order as the list)
+     */
+    public static int[] getOTPs(List<OTPURI> otpuris, Clock clock) {
+        long time = clock.millis();
+        int[] codes = new int[otpuris.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = otpuris.get(i).password(time);
+        }
+        return codes;
+    }
+
+    /**
+     * Same as getOTPs(List, Clock) only each code is formatted like getOTPSplit().
+     *
+     * @param otpuris - List of OTPURI
+     * @param clock   - Clock (for example a CoarseClock shared by the entries)
+     * @return - String[] (in the same order as the list)
+     */
+    public static String[] getOTPSplits(List<OTPURI> otpuris, Clock clock) {
+        long time = clock.millis();
+        String[] codes = new String[otpuris.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = otpuris.get(i).getOTPSplit(time);
+        }
+        return codes;
     }
 
     /**
@@ -0,0 +1,281 @@
+package com.simtechdata.otpuri;
+
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Creates new OTPURI entries with freshly generated secrets, one at a time or in bulk, for when you are the
+ * one enabling two factor authentication instead of the one scanning the QR code.
+ * <p>
+ * Secrets are random bytes from a SecureRandom (one per thread, so bulk provisioning does not fight over it),
+ * encoded as Base32 without padding. By default the number of bytes matches the output size of the
+ * algorithm, as RFC 4226 recommends: 20 for SHA1, 32 for SHA256 and 64 for SHA512.
+ * <p>
+ * When no issuer is given, every entry gets its own "Unknown Company" name. The numbers are handed out to
+ * each thread in blocks, so no two entries ever get the same name, even when they are created in the same
+ * millisecond on different threads. They start at 10000, above the numbers that OTPURI.Builder picks for
+ * OTPAuth Strings without an issuer.
+ * <p>
+ * Keep in mind that many authenticator apps, Google Authenticator among them, ignore the algorithm, digits
+ * and period of an OTPAuth String and always show 6 digit SHA1 codes on 30 second steps. Only change the
+ * defaults when you know the apps of your users support it.
+ */
+public class SecretProvisioner {
+
+    private static final char[] BASE32 = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567".toCharArray();
+    private static final int BLOCK = 1024;
+    private static final AtomicLong nextBlock = new AtomicLong(10_000);
+    private static final ThreadLocal<long[]> placeholderBlock = ThreadLocal.withInitial(() -> new long[]{0, 0});
+    private static final ThreadLocal<SecureRandom> secureRandom = ThreadLocal.withInitial(SecureRandom::new);
+
+    private final Algorithm algorithm;
+    private final int secretBytes;
+    private final String issuer;
+    private final int digits;
+    private final int period;
+    private final int firstDbId;
+    private final AtomicInteger nextDbId;
+
+    /**
+     * Builder class
+     */
+    public static class Builder {
+
+        /**
+         * Default Constructor
+         */
+        public Builder() {
+        }
+
+        private Algorithm algorithm = Algorithm.SHA1;
+        private int secretBytes = 0;
+        private String issuer = "";
+        private int digits = 6;
+        private int period = 30;
+        private int firstDbId = 0;
+
+        /**
+         * The algorithm of the new entries, which also decides the default secret length.
+         *
+         * @param algorithm - Algorithm enum
+         * @return Builder
+         */
+        public Builder algorithm(Algorithm algorithm) {
+            this.algorithm = algorithm;
+            return this;
+        }
+
+        /**
+         * The number of random bytes in each secret, if you do not want the default for the algorithm.
+         * RFC 4226 requires at least 16.
+         *
+         * @param secretBytes - int
+         * @return Builder
+         */
+        public Builder secretBytes(int secretBytes) {
+            if (secretBytes < 16) {
+                System.err.println("secretBytes (in Builder sentence) must be at least 16");
+            }
+            else {
+                this.secretBytes = secretBytes;
+            }
+            return this;
+        }
+
+        /**
+         * The issuer of the new entries. Leave it out to give every entry its own placeholder name.
+         *
+         * @param issuer - String
+         * @return Builder
+         */
+        public Builder issuer(String issuer) {
+            this.issuer = (issuer == null) ? "" : issuer;
+            return this;
+        }
+
+        /**
+         * The number of One Time Password digits of the new entries
+         *
+         * @param digits - int (6, 7, or 8)
+         * @return Builder
+         */
+        public Builder digits(int digits) {
+            if (digits < 6 || digits > 8) {
+                System.err.println("digits (in Builder sentence) must be one of these numbers: 6, 7, or 8");
+            }
+            else {
+                this.digits = digits;
+            }
+            return this;
+        }
+
+        /**
+         * The period of the new entries
+         *
+         * @param period - int (15, 30 or 60)
+         * @return Builder
+         */
+        public Builder period(int period) {
+            boolean valid = (period == 15) || (period == 30) || (period == 60);
+            if (!valid) {
+                System.err.println("period (in Builder sentence) can only be 15, 30, or 60");
+            }
+            else {
+                this.period = period;
+            }
+            return this;
+        }
+
+        /**
+         * The dbId of the first entry this provisioner creates. Every entry after it gets the next dbId,
+         * and a bulk provision numbers its entries in the order of the account names. Leave it out to leave
+         * the dbIds at 0.
+         *
+         * @param firstDbId - int
+         * @return Builder
+         */
+        public Builder firstDbId(int firstDbId) {
+            this.firstDbId = firstDbId;
+            return this;
+        }
+
+        /**
+         * This returns the SecretProvisioner that has been built with this Builder class
+         *
+         * @return SecretProvisioner
+         */
+        public SecretProvisioner build() {
+            return new SecretProvisioner(this);
+        }
+    }
+
+    private SecretProvisioner(Builder build) {
+        this.algorithm = build.algorithm;
+        this.secretBytes = (build.secretBytes > 0) ? build.secretBytes : defaultSecretBytes(build.algorithm);
+        this.issuer = build.issuer;
+        this.digits = build.digits;
+        this.period = build.period;
+        this.firstDbId = build.firstDbId;
+        this.nextDbId = new AtomicInteger(build.firstDbId);
+    }
+
+    /**
+     * Creates a single new entry for the account.
+     *
+     * @param accountName - String
+     * @return - OTPURI
+     */
+    public OTPURI provision(String accountName) {
+        return provision(nextDbIds(1), accountName);
+    }
+
+    /**
+     * Creates one new entry for every account name, in parallel. The returned list is in the same order
+     * as the account names.
+     *
+     * @param accountNames - List of String
+     * @return - List of OTPURI
+     */
+    public List<OTPURI> provision(List<String> accountNames) {
+        int first = nextDbIds(accountNames.size());
+        return IntStream.range(0, accountNames.size())
+                .parallel()
+                .mapToObj(i -> provision((first == 0) ? 0 : first + i, accountNames.get(i)))
+                .toList();
+    }
+
+    /**
+     * Generates a new secret with the length and randomness this provisioner was built with.
+     *
+     * @return - String (Base32)
+     */
+    public String newSecret() {
+        return newSecret(secretBytes);
+    }
+
+    /**
+     * Generates a new Base32 secret with the recommended length for the algorithm.
+     *
+     * @param algorithm - Algorithm enum
+     * @return - String (Base32)
+     */
+    public static String newSecret(Algorithm algorithm) {
+        return newSecret(defaultSecretBytes(algorithm));
+    }
+
+    /**
+     * Generates a new Base32 secret from the given number of random bytes.
+     *
+     * @param bytes - int
+     * @return - String (Base32)
+     */
+    public static String newSecret(int bytes) {
+        byte[] random = new byte[bytes];
+        secureRandom.get().nextBytes(random);
+        return base32(random);
+    }
+
+    /**
+     * Gets an "Unknown Company" name that no other call in this JVM has returned. OTPURI keeps these names
+     * as a number instead of adding them to the shared StringDictionary, so provisioning millions of entries
+     * without an issuer does not grow the dictionary.
+     *
+     * @return - String
+     */
+    public static String uniquePlaceholderIssuer() {
+        long[] block = placeholderBlock.get();
+        if (block[0] == block[1]) {
+            block[0] = nextBlock.getAndAdd(BLOCK);
+            block[1] = block[0] + BLOCK;
+        }
+        return "Unknown Company " + block[0]++;
+    }
+
+    /**
+     * Reserves the next count dbIds and returns the first one, or 0 when no firstDbId was given.
+     */
+    private int nextDbIds(int count) {
+        return (firstDbId == 0) ? 0 : nextDbId.getAndAdd(count);
+    }
+
+    private OTPURI provision(int dbId, String accountName) {
+        return new OTPURI.Builder()
+                .dbId(dbId)
+                .issuer(issuer.isEmpty() ? uniquePlaceholderIssuer() : issuer)
+                .accountName((accountName == null || accountName.isEmpty()) ? "UnknownUsername" : accountName)
+                .secret(newSecret())
+                .algorithm(algorithm)
+                .digits(digits)
+                .period(period)
+                .build();
+    }
+
+    private static int defaultSecretBytes(Algorithm algorithm) {
+        return switch (algorithm) {
+            case SHA1 -> 20;
+            case SHA256 -> 32;
+            case SHA512 -> 64;
+        };
+    }
+
+    static String base32(byte[] data) {
+        StringBuilder sb = new StringBuilder((data.length * 8 + 4) / 5);
+        int buffer = 0;
+        int bits = 0;
+        for (byte b : data) {
+            buffer = (buffer << 8) | (b & 0xFF);
+            bits += 8;
+            while (bits >= 5) {
+                sb.append(BASE32[(buffer >>> (bits - 5)) & 31]);
+                bits -= 5;
+            }
+        }
+        if (bits > 0) {
+            sb.append(BASE32[(buffer << (5 - bits)) & 31]);
+        }
+        return sb.toString();
+    }
+}
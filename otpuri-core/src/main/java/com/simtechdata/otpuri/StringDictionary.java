@@ -0,0 +1,189 @@
+package com.simtechdata.otpuri;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A concurrent dictionary that hands out a compact int id for every distinct String and gives the String
+ * back for the id.
+ * <p>
+ * OTPURI keeps its issuers in the shared dictionary, so a vault with a million entries from a few thousand
+ * companies only keeps a few thousand issuer Strings in memory, and comparing the issuers of two entries is
+ * an int comparison. Ids are never reused and Strings are never removed, which is what makes lookups lock
+ * free; the dictionary is meant for values that repeat, not for values that are unique to every entry,
+ * which is why account names and the placeholder issuers of SecretProvisioner are not kept in it. OTPURI.getIssuerMemoryReport() tells you what the
+ * dictionary saves for your entries.
+ * <p>
+ * Id 0 is always the empty String.
+ */
+public final class StringDictionary {
+
+    private static final int PAGE_BITS = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final StringDictionary shared = new StringDictionary();
+    static final long ENTRY_BYTES = 64; //Rough cost of one map entry, its boxed id and its page slot
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private volatile AtomicReferenceArray<AtomicReferenceArray<String>> pages = new AtomicReferenceArray<>(16);
+
+    /**
+     * Default Constructor, for when you want a dictionary of your own instead of the shared one.
+     */
+    public StringDictionary() {
+        intern("");
+    }
+
+    /**
+     * gets the dictionary that OTPURI uses
+     *
+     * @return - StringDictionary
+     */
+    public static StringDictionary shared() {
+        return shared;
+    }
+
+    /**
+     * gets the id of the String, adding it to the dictionary if it is not there yet. Null is treated as
+     * the empty String.
+     *
+     * @param value - String
+     * @return - int
+     */
+    public int intern(String value) {
+        String key = (value == null) ? "" : value;
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        return ids.computeIfAbsent(key, k -> {
+            int newId = nextId.getAndIncrement();
+            page(newId).set(newId & (PAGE_SIZE - 1), k);
+            return newId;
+        });
+    }
+
+    /**
+     * gets the String with the given id
+     *
+     * @param id - int
+     * @return - String
+     */
+    public String get(int id) {
+        AtomicReferenceArray<AtomicReferenceArray<String>> current = pages;
+        int page = id >>> PAGE_BITS;
+        if (id < 0 || page >= current.length() || current.get(page) == null) {
+            throw new IllegalArgumentException("Unknown dictionary id " + id);
+        }
+        String value = current.get(page).get(id & (PAGE_SIZE - 1));
+        if (value == null) {
+            throw new IllegalArgumentException("Unknown dictionary id " + id);
+        }
+        return value;
+    }
+
+    /**
+     * gets the number of distinct Strings in the dictionary
+     *
+     * @return - int
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    private AtomicReferenceArray<String> page(int id) {
+        int index = id >>> PAGE_BITS;
+        AtomicReferenceArray<AtomicReferenceArray<String>> current = pages;
+        if (index < current.length() && current.get(index) != null) {
+            return current.get(index);
+        }
+        synchronized (this) {
+            current = pages;
+            if (index >= current.length()) {
+                AtomicReferenceArray<AtomicReferenceArray<String>> grown = new AtomicReferenceArray<>(Math.max(index + 1, current.length() * 2));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                pages = grown;
+                current = grown;
+            }
+            if (current.get(index) == null) {
+                current.set(index, new AtomicReferenceArray<>(PAGE_SIZE));
+            }
+            return current.get(index);
+        }
+    }
+
+    /**
+     * Rough size of a String on a 64 bit JVM with compressed pointers and compact Strings.
+     */
+    static long estimateBytes(String value) {
+        boolean latin1 = true;
+        for (int i = 0; i < value.length() && latin1; i++) {
+            latin1 = value.charAt(i) < 256;
+        }
+        long array = 16L + (latin1 ? value.length() : value.length() * 2L);
+        return 24L + ((array + 7) & ~7L);
+    }
+
+    /**
+     * How much memory the Strings of a set of entries take up in a StringDictionary, and how much they would
+     * take up if every entry kept its own copy. All byte counts are estimates.
+     */
+    public static class MemoryReport {
+
+        private final int distinctStrings;
+        private final int entries;
+        private final long dictionaryBytes;
+        private final long undedupedBytes;
+
+        MemoryReport(int distinctStrings, int entries, long dictionaryBytes, long undedupedBytes) {
+            this.distinctStrings = distinctStrings;
+            this.entries = entries;
+            this.dictionaryBytes = dictionaryBytes;
+            this.undedupedBytes = undedupedBytes;
+        }
+
+        /**
+         * gets the number of distinct Strings the entries use
+         *
+         * @return - int
+         */
+        public int getDistinctStrings() {
+            return distinctStrings;
+        }
+
+        /**
+         * gets the number of entries the report covers
+         *
+         * @return - int
+         */
+        public int getEntries() {
+            return entries;
+        }
+
+        /**
+         * gets the estimated size of the distinct Strings in the dictionary, including their map entries
+         *
+         * @return - long (bytes)
+         */
+        public long getDictionaryBytes() {
+            return dictionaryBytes;
+        }
+
+        /**
+         * gets the estimated size of the Strings if every entry kept its own copy
+         *
+         * @return - long (bytes)
+         */
+        public long getUndedupedBytes() {
+            return undedupedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "MemoryReport{distinctStrings=" + distinctStrings + ", entries=" + entries + ", dictionaryBytes=" + dictionaryBytes + ", undedupedBytes=" + undedupedBytes + "}";
+        }
+    }
+}
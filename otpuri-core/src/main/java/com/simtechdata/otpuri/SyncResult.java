@@ -0,0 +1,69 @@
+package com.simtechdata.otpuri;
+
+/**
+ * What a MerkleVault.pull() had to do to catch up with the other replica.
+ */
+public class SyncResult {
+
+    private final int nodesCompared;
+    private final int leavesCompared;
+    private final int updated;
+    private final int removed;
+
+    SyncResult(int nodesCompared, int leavesCompared, int updated, int removed) {
+        this.nodesCompared = nodesCompared;
+        this.leavesCompared = leavesCompared;
+        this.updated = updated;
+        this.removed = removed;
+    }
+
+    /**
+     * gets the number of tree node hashes that were compared
+     *
+     * @return - int
+     */
+    public int getNodesCompared() {
+        return nodesCompared;
+    }
+
+    /**
+     * gets the number of leaves whose entries had to be compared one by one
+     *
+     * @return - int
+     */
+    public int getLeavesCompared() {
+        return leavesCompared;
+    }
+
+    /**
+     * gets the number of entries that were added or replaced
+     *
+     * @return - int
+     */
+    public int getUpdated() {
+        return updated;
+    }
+
+    /**
+     * gets the number of entries that were removed
+     *
+     * @return - int
+     */
+    public int getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Tells you if the two vaults were already in sync
+     *
+     * @return - boolean
+     */
+    public boolean inSync() {
+        return updated == 0 && removed == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "SyncResult{nodesCompared=" + nodesCompared + ", leavesCompared=" + leavesCompared + ", updated=" + updated + ", removed=" + removed + "}";
+    }
+}
@@ -0,0 +1,43 @@
+package com.simtechdata.otpuri;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The conversation a MerkleVault has with another replica while it syncs. Implement this over whatever
+ * connects your nodes; LocalSyncTransport does it for two vaults that live in the same process.
+ */
+public interface SyncTransport {
+
+    /**
+     * The depth of the tree on the other side. Both vaults must use the same depth.
+     *
+     * @return - int
+     */
+    int depth();
+
+    /**
+     * gets the hashes of the tree nodes with the given indexes, in the same order. The root is node 1 and
+     * the children of node n are 2n and 2n + 1.
+     *
+     * @param nodes - int[]
+     * @return - byte[][]
+     */
+    byte[][] nodeHashes(int[] nodes);
+
+    /**
+     * gets the digest of every entry that falls into the given leaves, keyed by dbId.
+     *
+     * @param leaves - int[] (leaf numbers, starting at 0)
+     * @return - Map of dbId to digest
+     */
+    Map<Integer, byte[]> entryDigests(int[] leaves);
+
+    /**
+     * gets the entries with the given dbIds.
+     *
+     * @param dbIds - int[]
+     * @return - List of OTPURI
+     */
+    List<OTPURI> fetch(int[] dbIds);
+}
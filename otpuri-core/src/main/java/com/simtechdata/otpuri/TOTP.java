@@ -0,0 +1,114 @@
+package com.simtechdata.otpuri;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Time based One Time Password generator (RFC 6238), using nothing but the JDK.
+ * <p>
+ * The hash (HmacSHA1, HmacSHA256 or HmacSHA512), the number of digits and the length of the time step are
+ * the ones the OTPAuth String advertises. The secret is decoded as Base32 after being upper cased
+ * (characters outside of the Base32 alphabet are skipped and decoding stops at the first '='). With SHA1,
+ * 6 digits and 30 seconds, it produces exactly the codes the GoogleAuthenticator library produced when this
+ * library depended on it. The one difference is that a secret whose last character has leftover bits that
+ * are not zero is accepted (the leftover bits are dropped) instead of being rejected.
+ */
+final class TOTP {
+
+    private static final int[] POWERS = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000, 1_000_000_000};
+    private static final byte[] DECODE = new byte[128];
+    private static final ThreadLocal<Mac[]> hmacs = ThreadLocal.withInitial(() -> new Mac[Algorithm.values().length]);
+
+    static {
+        Arrays.fill(DECODE, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private TOTP() {
+    }
+
+    /**
+     * gets the One Time Password for the secret at the given time
+     *
+     * @param secret    - String (Base32)
+     * @param time      - long (milliseconds)
+     * @param algorithm - Algorithm
+     * @param digits    - int (1 to 9)
+     * @param period    - int (seconds)
+     * @return - int
+     */
+    static int getPassword(String secret, long time, Algorithm algorithm, int digits, int period) {
+        if (algorithm == null) {
+            throw new IllegalArgumentException("Unknown algorithm");
+        }
+        if (digits < 1 || digits >= POWERS.length) {
+            throw new IllegalArgumentException("digits must be between 1 and " + (POWERS.length - 1));
+        }
+        if (period < 1) {
+            throw new IllegalArgumentException("period must be at least one second");
+        }
+        return calculateCode(decodeBase32(secret), time / (period * 1000L), algorithm, POWERS[digits]);
+    }
+
+    static byte[] decodeBase32(String secret) {
+        String upper = secret.toUpperCase();
+        byte[] out = new byte[upper.length() * 5 / 8];
+        int length = 0;
+        int buffer = 0;
+        int bits = 0;
+        for (int i = 0; i < upper.length(); i++) {
+            char c = upper.charAt(i);
+            if (c == '=') {
+                break;
+            }
+            if (c >= DECODE.length || DECODE[c] < 0) {
+                continue;
+            }
+            buffer = (buffer << 5) | DECODE[c];
+            bits += 5;
+            if (bits >= 8) {
+                bits -= 8;
+                out[length++] = (byte) (buffer >>> bits);
+            }
+        }
+        return (length == out.length) ? out : Arrays.copyOf(out, length);
+    }
+
+    private static int calculateCode(byte[] key, long step, Algorithm algorithm, int modulus) {
+        byte[] data = new byte[8];
+        long value = step;
+        for (int i = 8; i-- > 0; value >>>= 8) {
+            data[i] = (byte) value;
+        }
+        String name = "Hmac" + algorithm.get();
+        byte[] hash;
+        try {
+            Mac[] macs = hmacs.get();
+            Mac mac = macs[algorithm.ordinal()];
+            if (mac == null) {
+                mac = Mac.getInstance(name);
+                macs[algorithm.ordinal()] = mac;
+            }
+            mac.init(new SecretKeySpec(key, name));
+            hash = mac.doFinal(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        } catch (InvalidKeyException e) {
+            throw new IllegalArgumentException("The secret is not a valid key", e);
+        }
+        int offset = hash[hash.length - 1] & 0xF;
+        long truncated = 0;
+        for (int i = 0; i < 4; i++) {
+            truncated <<= 8;
+            truncated |= (hash[offset + i] & 0xFF);
+        }
+        truncated &= 0x7FFFFFFF;
+        return (int) (truncated % modulus);
+    }
+}
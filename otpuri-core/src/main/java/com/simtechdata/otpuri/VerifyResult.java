@@ -0,0 +1,11 @@
+package com.simtechdata.otpuri;
+
+/**
+ * The outcome of BruteForceLimiter.attempt().
+ */
+public enum VerifyResult {
+	VALID,       //The attempt was allowed and the code is correct
+	WRONG_CODE,  //The attempt was allowed and the code is wrong
+	LOCKED_OUT,  //The account has used up its attempts, the code was not checked
+	NO_ROOM      //Every slot the account could use holds another account's lockout, the code was not checked
+}
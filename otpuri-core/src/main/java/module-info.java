@@ -0,0 +1,3 @@
+module com.simtechdata.otpuri {
+    exports com.simtechdata.otpuri;
+}
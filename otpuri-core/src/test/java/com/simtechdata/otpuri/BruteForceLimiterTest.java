@@ -0,0 +1,199 @@
+package com.simtechdata.otpuri;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BruteForceLimiterTest {
+
+    private static final long T0 = 1_700_000_010_000L; //Early in a 30 second step
+
+    @Test
+    void lockoutDoublesUntilASuccess() {
+        BruteForceLimiter limiter = new BruteForceLimiter.Builder().build();
+        OTPURI account = account(42);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(account, T0));
+        }
+        assertFalse(limiter.tryAcquire(account, T0));
+        assertEquals(T0 + 30_000L, limiter.lockedUntil(account));
+        assertFalse(limiter.tryAcquire(account, T0 + 29_999L));
+
+        long t1 = T0 + 30_000L;
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(account, t1));
+        }
+        assertFalse(limiter.tryAcquire(account, t1));
+        assertEquals(t1 + 60_000L, limiter.lockedUntil(account));
+
+        long t2 = t1 + 60_000L;
+        assertTrue(limiter.tryAcquire(account, t2));
+        limiter.recordSuccess(account);
+        assertEquals(0L, limiter.lockedUntil(account));
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.tryAcquire(account, t2));
+        }
+        assertFalse(limiter.tryAcquire(account, t2));
+        assertEquals(t2 + 30_000L, limiter.lockedUntil(account));
+    }
+
+    @Test
+    void lockoutIsCappedAtMaxLockout() {
+        BruteForceLimiter limiter = new BruteForceLimiter.Builder().attemptsPerStep(1).baseLockout(1_000L).maxLockout(5_000L).build();
+        OTPURI account = account(7);
+        long time = T0;
+        long[] expected = {1_000L, 2_000L, 4_000L, 5_000L, 5_000L};
+        for (long lockout : expected) {
+            assertTrue(limiter.tryAcquire(account, time));
+            assertFalse(limiter.tryAcquire(account, time));
+            assertEquals(time + lockout, limiter.lockedUntil(account));
+            time = limiter.lockedUntil(account);
+        }
+    }
+
+    @Test
+    void lockedAccountIsNotEvictedByCollidingKeys() {
+        BruteForceLimiter limiter = new BruteForceLimiter.Builder().build();
+        OTPURI target = account(42);
+        for (int i = 0; i < 6; i++) {
+            limiter.tryAcquire(target, T0);
+        }
+        long lockedUntil = limiter.lockedUntil(target);
+        assertEquals(T0 + 30_000L, lockedUntil);
+
+        //These dbIds land in the same slots as 42 in a table of the default size
+        for (int dbId : new int[]{153402, 154135, 212121, 237452}) {
+            limiter.tryAcquire(account(dbId), T0 + 1_000L);
+            limiter.tryAcquire(account(dbId), T0 + 1_000L);
+        }
+        assertEquals(lockedUntil, limiter.lockedUntil(target));
+        assertFalse(limiter.tryAcquire(target, T0 + 2_000L));
+    }
+
+    @Test
+    void newKeysAreDeniedWhenEverySlotHoldsALockout() {
+        BruteForceLimiter limiter = new BruteForceLimiter.Builder().capacity(4).attemptsPerStep(1).build();
+        for (int dbId = 1; dbId <= 4; dbId++) {
+            OTPURI account = account(dbId);
+            assertTrue(limiter.tryAcquire(account, T0));
+            assertFalse(limiter.tryAcquire(account, T0));
+        }
+        for (int dbId = 100; dbId < 200; dbId++) {
+            OTPURI account = account(dbId);
+            assertFalse(limiter.tryAcquire(account, T0 + 1_000L));
+            assertEquals(0L, limiter.lockedUntil(account));
+            assertEquals(VerifyResult.NO_ROOM, limiter.attempt(account, account.getOTP(T0 + 1_000L), T0 + 1_000L));
+        }
+        for (int dbId = 1; dbId <= 4; dbId++) {
+            assertEquals(T0 + 30_000L, limiter.lockedUntil(account(dbId)));
+            assertEquals(VerifyResult.LOCKED_OUT, limiter.attempt(account(dbId), 0, T0 + 1_000L));
+        }
+
+        //Once the lockouts have ended and maxLockout has passed, the slots can be reused
+        long later = T0 + 30_000L + 3_600_000L;
+        assertTrue(limiter.tryAcquire(account(100), later));
+    }
+
+    @Test
+    void lockedNeighboursDoNotLockOutANewAccount() {
+        BruteForceLimiter limiter = new BruteForceLimiter.Builder().capacity(1024).attemptsPerStep(1).build();
+        OTPURI target = account(42);
+        int start = limiter.spread(42);
+        //Lock out four accounts that fill the slots 42 would use first
+        int locked = 0;
+        for (int dbId = 1000; locked < 4; dbId++) {
+            if (limiter.spread(dbId) == start) {
+                assertTrue(limiter.tryAcquire(account(dbId), T0));
+                assertFalse(limiter.tryAcquire(account(dbId), T0));
+                locked++;
+            }
+        }
+        int code = target.getOTP(T0 + 1_000L);
+        assertEquals(VerifyResult.VALID, limiter.attempt(target, code, T0 + 1_000L));
+
+        //The account keeps its slot further along, so its attempts are still counted
+        assertEquals(VerifyResult.LOCKED_OUT, limiter.attempt(target, code, T0 + 1_000L));
+        assertEquals(T0 + 31_000L, limiter.lockedUntil(target));
+    }
+
+    @Test
+    void accountLockedDuringATakeoverIsNotEvicted() {
+        BruteForceLimiter limiter = new BruteForceLimiter.Builder().capacity(4).attemptsPerStep(1).build();
+        for (int dbId = 1; dbId <= 4; dbId++) {
+            assertTrue(limiter.tryAcquire(account(dbId), T0 + dbId));
+        }
+        //Account 1 is the oldest, so it is the one find() picks for a new key; lock it before the swap
+        AtomicInteger calls = new AtomicInteger();
+        limiter.afterFind = index -> {
+            if (calls.incrementAndGet() == 1) {
+                assertFalse(limiter.tryAcquire(account(1), T0 + 1_000L));
+            }
+        };
+        assertTrue(limiter.tryAcquire(account(100), T0 + 1_000L));
+        assertEquals(T0 + 31_000L, limiter.lockedUntil(account(1)));
+        assertTrue(calls.get() > 2);
+    }
+
+    @Test
+    void unlockedAccountsAreStillEvicted() {
+        BruteForceLimiter limiter = new BruteForceLimiter.Builder().capacity(4).build();
+        for (int dbId = 1; dbId <= 4; dbId++) {
+            assertTrue(limiter.tryAcquire(account(dbId), T0));
+        }
+        for (int dbId = 100; dbId < 200; dbId++) {
+            assertTrue(limiter.tryAcquire(account(dbId), T0 + 1_000L));
+        }
+    }
+
+    @Test
+    void concurrentAttemptsNeverExceedTheBucket() throws InterruptedException {
+        int threads = 8;
+        int attemptsPerThread = 1_000;
+        BruteForceLimiter limiter = new BruteForceLimiter.Builder().attemptsPerStep(5).build();
+        OTPURI account = account(99);
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < attemptsPerThread; i++) {
+                    if (limiter.tryAcquire(account, T0)) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(5, allowed.get());
+        assertEquals(T0 + 30_000L, limiter.lockedUntil(account));
+    }
+
+    @Test
+    void verifyChecksTheCode() {
+        BruteForceLimiter limiter = new BruteForceLimiter.Builder().build();
+        OTPURI account = account(5);
+        int code = account.getOTP(T0);
+        assertFalse(limiter.verify(account, (code + 1) % 1_000_000, T0));
+        assertTrue(limiter.verify(account, code, T0));
+        assertEquals(VerifyResult.WRONG_CODE, limiter.attempt(account, (code + 1) % 1_000_000, T0));
+        assertEquals(VerifyResult.VALID, limiter.attempt(account, code, T0));
+    }
+
+    private static OTPURI account(int dbId) {
+        return new OTPURI.Builder().secret("JBSWY3DPEHPK3PXP").dbId(dbId).build();
+    }
+}
@@ -0,0 +1,195 @@
+package com.simtechdata.otpuri;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CodeLookupIndexTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    @Test
+    void findsEveryEntryByItsCurrentCode() {
+        List<OTPURI> entries = TestEntries.entries(3_000);
+        MutableClock clock = new MutableClock(T0);
+        CodeLookupIndex index = new CodeLookupIndex(entries, clock);
+        assertEquals(entries.size(), index.size());
+        for (OTPURI entry : entries) {
+            int code = entry.getOTP(T0);
+            assertTrue(index.lookup(code).contains(entry));
+            assertTrue(index.lookup(entry.getOTPSplit(T0)).contains(entry));
+            for (OTPURI found : index.lookup(code)) {
+                assertEquals(code, found.getOTP(T0));
+            }
+        }
+        assertTrue(index.lookup("12x456").isEmpty());
+    }
+
+    @Test
+    void typedCodesOnlyMatchEntriesWithThatManyDigits() {
+        List<OTPURI> entries = TestEntries.entries(3_000);
+        CodeLookupIndex index = new CodeLookupIndex(entries, new MutableClock(T0));
+        for (OTPURI entry : entries) {
+            String typed = entry.getOTPString(T0);
+            List<OTPURI> found = index.lookup(typed);
+            assertTrue(found.contains(entry));
+            assertTrue(found.stream().allMatch(otpuri -> otpuri.getDigits() == typed.length()));
+            assertFalse(index.lookup("0" + typed).contains(entry));
+            if (typed.startsWith("0")) {
+                assertFalse(index.lookup(typed.substring(1)).contains(entry));
+            }
+        }
+    }
+
+    @Test
+    void followsTheClockAcrossStepChanges() {
+        List<OTPURI> entries = TestEntries.entries(600);
+        MutableClock clock = new MutableClock(T0);
+        CodeLookupIndex index = new CodeLookupIndex(entries, clock);
+        Random random = new Random(37);
+        for (int round = 0; round < 40; round++) {
+            clock.time.addAndGet(random.nextInt(20_000));
+            if (round % 2 == 0) {
+                index.refresh();
+            }
+            long now = clock.millis();
+            for (int i = 0; i < 50; i++) {
+                OTPURI entry = entries.get(random.nextInt(entries.size()));
+                assertTrue(index.lookup(entry.getOTP(now)).contains(entry), entry.getPeriod() + "s entry at " + (now - T0));
+            }
+        }
+    }
+
+    @Test
+    void staleTimesDoNotMoveTheIndexBack() {
+        List<OTPURI> entries = TestEntries.entries(300);
+        MutableClock clock = new MutableClock(T0);
+        CodeLookupIndex index = new CodeLookupIndex(entries, clock);
+        OTPURI entry = entries.get(0);
+        assertTrue(index.lookup(entry.getOTP(T0)).contains(entry));
+        long groups = index.rebuilds();
+
+        long later = T0 + 60_000L; //A new step for every period
+        clock.time.set(later);
+        assertTrue(index.lookup(entry.getOTP(later)).contains(entry));
+        assertEquals(2 * groups, index.rebuilds());
+
+        //A lookup that read the clock before the step changed serves the new step instead of rebuilding the old one
+        assertTrue(index.lookup(entry.getOTP(later), T0).contains(entry));
+        assertEquals(2 * groups, index.rebuilds());
+        index.refresh();
+        assertEquals(2 * groups, index.rebuilds());
+
+        //Only when the clock itself goes back does the index follow it
+        clock.time.set(T0);
+        assertTrue(index.lookup(entry.getOTP(T0)).contains(entry));
+        assertEquals(3 * groups, index.rebuilds());
+    }
+
+    @Test
+    void dbIdLookup() {
+        List<OTPURI> entries = TestEntries.entries(100);
+        CodeLookupIndex index = new CodeLookupIndex(entries, new MutableClock(T0));
+        OTPURI entry = entries.get(42);
+        int[] dbIds = index.lookupDbIds(entry.getOTP(T0));
+        assertTrue(contains(dbIds, entry.getDbId()));
+    }
+
+    @Test
+    void concurrentLookupsWhileTheStepChanges() throws Exception {
+        List<OTPURI> entries = TestEntries.entries(20_000);
+        MutableClock clock = new MutableClock(T0);
+        CodeLookupIndex index = new CodeLookupIndex(entries, clock);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger misses = new AtomicInteger();
+        AtomicInteger lookups = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> readers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            readers.add(pool.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (running.get()) {
+                    OTPURI entry = entries.get(random.nextInt(entries.size()));
+                    long before = clock.millis();
+                    int code = entry.getOTP(before);
+                    List<OTPURI> found = index.lookup(code);
+                    //Only a miss when the clock did not move during the lookup
+                    if (clock.millis() == before && !found.contains(entry)) {
+                        misses.incrementAndGet();
+                    }
+                    lookups.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (int step = 0; step < 60; step++) {
+            Thread.sleep(10);
+            clock.time.addAndGet(15_000L);
+        }
+        running.set(false);
+        for (Future<?> reader : readers) {
+            reader.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        assertEquals(0, misses.get());
+        assertTrue(lookups.get() > 0);
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private final AtomicLong time;
+
+        MutableClock(long time) {
+            this.time = new AtomicLong(time);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public long millis() {
+            return time.get();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(time.get());
+        }
+    }
+}
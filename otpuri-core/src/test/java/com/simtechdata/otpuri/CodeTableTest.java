@@ -0,0 +1,90 @@
+package com.simtechdata.otpuri;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CodeTableTest {
+
+    private static final long START = 1_700_000_000_000L;
+    private static final long END = START + 600_000L;
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void verifiesEveryPartOfEveryStep() throws IOException {
+        List<OTPURI> entries = TestEntries.entries(27);
+        Path file = folder.resolve("codes.otpt");
+        CodeTable.export(entries, file, START, END);
+        try (CodeTable table = CodeTable.open(file)) {
+            assertEquals(entries.size(), table.size());
+            checkAll(table, entries);
+        }
+    }
+
+    @Test
+    void readsTablesThatSpanManyChunks() throws IOException {
+        List<OTPURI> entries = TestEntries.entries(27);
+        Path file = folder.resolve("codes.otpt");
+        CodeTable.export(entries, file, START, END);
+        try (CodeTable table = CodeTable.open(file, 6)) {
+            checkAll(table, entries);
+        }
+    }
+
+    @Test
+    void writesLongRangesInBlocks() throws IOException {
+        OTPURI entry = new OTPURI.Builder().dbId(1).secret(SecretProvisioner.newSecret(Algorithm.SHA1)).period(15).build();
+        long end = START + 80 * 3_600_000L; //More steps than are written at a time
+        Path file = folder.resolve("codes.otpt");
+        CodeTable.export(List.of(entry), file, START, end);
+        try (CodeTable table = CodeTable.open(file)) {
+            for (long time = START; time < end; time += 997_000L) {
+                assertTrue(table.verify(1, entry.getOTP(time), time));
+            }
+            assertTrue(table.verify(1, entry.getOTP(end - 1), end - 1));
+        }
+    }
+
+    @Test
+    void rejectsTimesOutsideTheTable() throws IOException {
+        OTPURI entry = TestEntries.entries(1).get(0);
+        Path file = folder.resolve("codes.otpt");
+        CodeTable.export(List.of(entry), file, START, END);
+        try (CodeTable table = CodeTable.open(file)) {
+            assertFalse(table.verify(entry.getDbId(), entry.getOTP(START - 1), START - 1));
+            assertFalse(table.verify(entry.getDbId(), entry.getOTP(END), END));
+            assertFalse(table.verify(entry.getDbId() + 1, entry.getOTP(START), START));
+        }
+    }
+
+    @Test
+    void rejectsDuplicateDbIds() {
+        OTPURI entry = TestEntries.entries(1).get(0);
+        assertThrows(IllegalArgumentException.class, () -> CodeTable.export(List.of(entry, entry), folder.resolve("codes.otpt"), START, END));
+    }
+
+    private static void checkAll(CodeTable table, List<OTPURI> entries) {
+        for (OTPURI entry : entries) {
+            for (long time = START; time < END; time += 5_000L) {
+                int code = entry.getOTP(time);
+                assertTrue(table.verify(entry.getDbId(), code, time), entry.getPeriod() + "s entry at " + (time - START));
+                assertTrue(table.verify(entry.getDbId(), entry.getOTPSplit(time), time));
+                String typed = entry.getOTPString(time);
+                assertTrue(table.verify(entry.getDbId(), typed, time));
+                assertFalse(table.verify(entry.getDbId(), "0" + typed, time));
+                if (typed.startsWith("0")) {
+                    assertFalse(table.verify(entry.getDbId(), typed.substring(1), time));
+                }
+                int modulus = (int) Math.pow(10, entry.getDigits());
+                assertFalse(table.verify(entry.getDbId(), (code + 1) % modulus, time));
+            }
+        }
+    }
+}
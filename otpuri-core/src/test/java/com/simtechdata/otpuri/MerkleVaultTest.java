@@ -0,0 +1,141 @@
+package com.simtechdata.otpuri;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MerkleVaultTest {
+
+    @Test
+    void pullIntoAnEmptyVault() {
+        MerkleVault remote = vault(10, 500);
+        MerkleVault local = new MerkleVault(10);
+        SyncResult result = local.pull(new LocalSyncTransport(remote));
+        assertEquals(500, result.getUpdated());
+        assertEquals(0, result.getRemoved());
+        assertFalse(result.inSync());
+        assertEquals(500, local.size());
+        assertArrayEquals(remote.getRootHash(), local.getRootHash());
+        for (OTPURI entry : remote.getAll()) {
+            OTPURI copy = local.get(entry.getDbId());
+            assertNotSame(entry, copy);
+            assertArrayEquals(MerkleVault.digest(entry), MerkleVault.digest(copy));
+        }
+    }
+
+    @Test
+    void identicalVaultsOnlyCompareTheRoot() {
+        MerkleVault remote = vault(10, 500);
+        MerkleVault local = vault(10, 500);
+        LocalSyncTransport transport = new LocalSyncTransport(remote);
+        SyncResult result = local.pull(transport);
+        assertTrue(result.inSync());
+        assertEquals(1, result.getNodesCompared());
+        assertEquals(0, result.getLeavesCompared());
+        assertEquals(1, transport.getRoundTrips());
+    }
+
+    @Test
+    void singleEditIsFoundByWalkingOnePath() {
+        for (int depth : new int[]{4, 10, 16}) {
+            for (int size : new int[]{100, 5_000}) {
+                MerkleVault remote = vault(depth, size);
+                MerkleVault local = vault(depth, size);
+                OTPURI edited = remote.get(size / 2);
+                edited.setNotes("changed");
+                remote.put(edited);
+
+                SyncResult result = local.pull(new LocalSyncTransport(remote));
+                assertEquals(1, result.getUpdated());
+                assertEquals(0, result.getRemoved());
+                assertEquals(1, result.getLeavesCompared());
+                assertEquals(1 + 2 * depth, result.getNodesCompared(), "depth " + depth + ", size " + size);
+                assertEquals("changed", local.get(size / 2).getNotes());
+                assertArrayEquals(remote.getRootHash(), local.getRootHash());
+            }
+        }
+    }
+
+    @Test
+    void deleteAndInsertOnTheOtherSide() {
+        MerkleVault remote = vault(10, 1_000);
+        MerkleVault local = vault(10, 1_000);
+        remote.remove(17);
+        remote.put(entry(5_000));
+
+        SyncResult result = local.pull(new LocalSyncTransport(remote));
+        assertEquals(1, result.getUpdated());
+        assertEquals(1, result.getRemoved());
+        assertNull(local.get(17));
+        assertNotNull(local.get(5_000));
+        assertEquals(1_000, local.size());
+        assertArrayEquals(remote.getRootHash(), local.getRootHash());
+        assertTrue(local.pull(new LocalSyncTransport(remote)).inSync());
+    }
+
+    @Test
+    void localOnlyEntriesAreRemoved() {
+        MerkleVault remote = vault(8, 200);
+        MerkleVault local = vault(8, 200);
+        for (int dbId = 1_000; dbId < 1_010; dbId++) {
+            local.put(entry(dbId));
+        }
+        SyncResult result = local.pull(new LocalSyncTransport(remote));
+        assertEquals(0, result.getUpdated());
+        assertEquals(10, result.getRemoved());
+        assertArrayEquals(remote.getRootHash(), local.getRootHash());
+    }
+
+    @Test
+    void putAllHashesLikePut() {
+        List<OTPURI> entries = new ArrayList<>();
+        for (int dbId = 1; dbId <= 2_000; dbId++) {
+            entries.add(entry(dbId));
+        }
+        MerkleVault one = new MerkleVault(12);
+        entries.forEach(one::put);
+        Collections.shuffle(entries, new Random(28));
+        MerkleVault all = new MerkleVault(12);
+        all.putAll(entries.subList(0, 1_000));
+        all.putAll(entries.subList(1_000, 2_000));
+        assertArrayEquals(one.getRootHash(), all.getRootHash());
+
+        //Replacing entries through putAll drops their old digests
+        OTPURI changed = new OTPURI.Builder(entries.get(0)).notes("changed").build();
+        one.put(changed);
+        all.putAll(List.of(entries.get(1), changed));
+        assertArrayEquals(one.getRootHash(), all.getRootHash());
+    }
+
+    @Test
+    void depthsMustMatch() {
+        MerkleVault local = new MerkleVault(10);
+        LocalSyncTransport remote = new LocalSyncTransport(new MerkleVault(12));
+        assertThrows(IllegalStateException.class, () -> local.pull(remote));
+        assertThrows(IllegalArgumentException.class, () -> new MerkleVault(0));
+        assertThrows(IllegalArgumentException.class, () -> new MerkleVault(25));
+    }
+
+    private static MerkleVault vault(int depth, int size) {
+        MerkleVault vault = new MerkleVault(depth);
+        for (int dbId = 1; dbId <= size; dbId++) {
+            vault.put(entry(dbId));
+        }
+        return vault;
+    }
+
+    private static OTPURI entry(int dbId) {
+        return new OTPURI.Builder()
+                .dbId(dbId)
+                .issuer("Company " + (dbId % 50))
+                .accountName("user" + dbId)
+                .secret("JBSWY3DPEHPK3PXP")
+                .notes("notes " + dbId)
+                .build();
+    }
+}
@@ -0,0 +1,67 @@
+package com.simtechdata.otpuri;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OTPURITest {
+
+    @Test
+    void batchCodesComeFromOneInstant() {
+        List<OTPURI> entries = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            entries.add(new OTPURI.Builder().dbId(i + 1).secret(SecretProvisioner.newSecret(Algorithm.SHA1)).build());
+        }
+        long start = 1_700_000_009_999L; //The last millisecond of a time step
+        SteppingClock clock = new SteppingClock(start);
+        int[] codes = OTPURI.getOTPs(entries, clock);
+        assertEquals(start + 1, clock.time);
+        for (int i = 0; i < codes.length; i++) {
+            assertEquals(entries.get(i).getOTP(start), codes[i]);
+        }
+        String[] splits = OTPURI.getOTPSplits(entries, clock);
+        for (int i = 0; i < splits.length; i++) {
+            assertEquals(entries.get(i).getOTPSplit(start + 1), splits[i]);
+        }
+        assertEquals(0, OTPURI.getOTPs(List.of(), clock).length);
+    }
+
+    /**
+     * Moves forward a millisecond every time it is read.
+     */
+    private static final class SteppingClock extends Clock {
+
+        private long time;
+
+        SteppingClock(long time) {
+            this.time = time;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public long millis() {
+            return time++;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.simtechdata.otpuri;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SecretProvisionerTest {
+
+    @Test
+    void dbIdsAdvanceAcrossCalls() {
+        SecretProvisioner provisioner = new SecretProvisioner.Builder().issuer("Acme").firstDbId(1000).build();
+        assertEquals(1000, provisioner.provision("a").getDbId());
+        assertEquals(1001, provisioner.provision("b").getDbId());
+        List<OTPURI> bulk = provisioner.provision(List.of("c", "d", "e"));
+        assertEquals(List.of(1002, 1003, 1004), bulk.stream().map(OTPURI::getDbId).toList());
+        assertEquals(1005, provisioner.provision("f").getDbId());
+    }
+
+    @Test
+    void dbIdsStayZeroWithoutFirstDbId() {
+        SecretProvisioner provisioner = new SecretProvisioner.Builder().issuer("Acme").build();
+        assertEquals(0, provisioner.provision("a").getDbId());
+        assertTrue(provisioner.provision(List.of("b", "c")).stream().allMatch(otpuri -> otpuri.getDbId() == 0));
+    }
+
+    @Test
+    void placeholderIssuersAreUniqueAndOutsideTheBuilderRange() {
+        SecretProvisioner provisioner = new SecretProvisioner.Builder().build();
+        Set<String> issuers = new HashSet<>();
+        for (OTPURI otpuri : provisioner.provision(List.of("a", "b", "c", "d", "e", "f", "g", "h"))) {
+            String issuer = otpuri.getIssuer();
+            assertTrue(issuers.add(issuer), issuer);
+            assertTrue(issuer.startsWith("Unknown Company "), issuer);
+            assertTrue(Long.parseLong(issuer.substring("Unknown Company ".length())) >= 10_000L, issuer);
+        }
+    }
+
+    @Test
+    void secretsMatchTheAlgorithm() {
+        assertEquals(32, SecretProvisioner.newSecret(Algorithm.SHA1).length());
+        assertEquals(52, SecretProvisioner.newSecret(Algorithm.SHA256).length());
+        assertEquals(103, SecretProvisioner.newSecret(Algorithm.SHA512).length());
+        assertNotEquals(SecretProvisioner.newSecret(Algorithm.SHA1), SecretProvisioner.newSecret(Algorithm.SHA1));
+    }
+}
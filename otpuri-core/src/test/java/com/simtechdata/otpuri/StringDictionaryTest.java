@@ -0,0 +1,91 @@
+package com.simtechdata.otpuri;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringDictionaryTest {
+
+    @Test
+    void internAndGet() {
+        StringDictionary dictionary = new StringDictionary();
+        assertEquals("", dictionary.get(0));
+        assertEquals(0, dictionary.intern(null));
+        int acme = dictionary.intern("Acme");
+        assertEquals(acme, dictionary.intern(new String("Acme")));
+        assertEquals("Acme", dictionary.get(acme));
+        assertNotEquals(acme, dictionary.intern("Other"));
+        assertThrows(IllegalArgumentException.class, () -> dictionary.get(12_345));
+        assertThrows(IllegalArgumentException.class, () -> dictionary.get(-1));
+    }
+
+    @Test
+    void concurrentInternsAgreeOnIds() {
+        StringDictionary dictionary = new StringDictionary();
+        int[] first = IntStream.range(0, 5_000).parallel().map(i -> dictionary.intern("value " + i)).toArray();
+        int[] second = IntStream.range(0, 5_000).parallel().map(i -> dictionary.intern("value " + i)).toArray();
+        assertArrayEquals(first, second);
+        assertEquals(5_001, dictionary.size());
+        for (int i = 0; i < first.length; i++) {
+            assertEquals("value " + i, dictionary.get(first[i]));
+        }
+    }
+
+    @Test
+    void accountNamesAreNotKeptInTheDictionary() {
+        String prefix = "account-" + System.nanoTime() + "-";
+        int before = StringDictionary.shared().size();
+        List<OTPURI> entries = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            entries.add(new OTPURI.Builder().issuer("Dictionary Test").accountName(prefix + i).secret("JBSWY3DPEHPK3PXP").build());
+        }
+        assertTrue(StringDictionary.shared().size() - before <= 1);
+        assertEquals(prefix + 7, entries.get(7).getLabelAccount());
+        assertTrue(entries.get(0).sameIssuer(entries.get(1)));
+        assertFalse(entries.get(0).sameAccount(entries.get(1)));
+    }
+
+    @Test
+    void placeholderIssuersAreNotKeptInTheDictionary() {
+        SecretProvisioner provisioner = new SecretProvisioner.Builder().build();
+        int before = StringDictionary.shared().size();
+        List<OTPURI> entries = provisioner.provision(IntStream.range(0, 1_000).mapToObj(i -> "user" + i).toList());
+        assertEquals(before, StringDictionary.shared().size());
+        for (OTPURI entry : entries) {
+            OTPURI copy = new OTPURI.Builder(entry).build();
+            assertEquals(entry.getIssuer(), copy.getIssuer());
+            assertTrue(entry.sameIssuer(copy));
+            assertEquals(entry.getIssuer(), new OTPURI.Builder(entry.toString()).build().getIssuer());
+        }
+        assertFalse(entries.get(0).sameIssuer(entries.get(1)));
+        assertEquals(0, OTPURI.getIssuerMemoryReport(entries).getDistinctStrings());
+
+        //Names that only look like placeholders still round trip
+        for (String issuer : new String[]{"Unknown Company 09999", "Unknown Company 9999", "Unknown Company 99999999999", "Unknown Company 12345x"}) {
+            assertEquals(issuer, new OTPURI.Builder().issuer(issuer).secret("JBSWY3DPEHPK3PXP").build().getIssuer());
+        }
+    }
+
+    @Test
+    void issuerMemoryReportCountsEachEntryOnce() {
+        List<OTPURI> entries = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            entries.add(new OTPURI.Builder().issuer("Company " + (i % 10)).accountName("user" + i).secret("JBSWY3DPEHPK3PXP").build());
+        }
+        StringDictionary.MemoryReport report = OTPURI.getIssuerMemoryReport(entries);
+        assertEquals(10, report.getDistinctStrings());
+        assertEquals(1_000, report.getEntries());
+        long perIssuer = StringDictionary.estimateBytes("Company 0");
+        assertEquals(1_000 * perIssuer, report.getUndedupedBytes());
+        assertEquals(10 * (perIssuer + StringDictionary.ENTRY_BYTES), report.getDictionaryBytes());
+
+        //Copies and setters do not change what the same entries cost
+        entries.replaceAll(otpuri -> new OTPURI.Builder(otpuri).build());
+        entries.forEach(otpuri -> otpuri.setIssuer(otpuri.getIssuer()));
+        assertEquals(1_000 * perIssuer, OTPURI.getIssuerMemoryReport(entries).getUndedupedBytes());
+    }
+}
@@ -0,0 +1,84 @@
+package com.simtechdata.otpuri;
+
+import com.warrenstrange.googleauth.GoogleAuthenticator;
+import com.warrenstrange.googleauth.GoogleAuthenticatorConfig;
+import com.warrenstrange.googleauth.HmacHashFunction;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TOTPTest {
+
+    private static final String SEED_SHA1 = "12345678901234567890";
+    private static final String SEED_SHA256 = "12345678901234567890123456789012";
+    private static final String SEED_SHA512 = "1234567890123456789012345678901234567890123456789012345678901234";
+    private static final long[] TIMES = {59L, 1111111109L, 1111111111L, 1234567890L, 2000000000L, 20000000000L};
+
+    /**
+     * Test vectors from Appendix B of RFC 6238 (8 digits, 30 second steps).
+     */
+    @Test
+    void rfc6238TestVectors() {
+        int[] sha1 = {94287082, 7081804, 14050471, 89005924, 69279037, 65353130};
+        int[] sha256 = {46119246, 68084774, 67062674, 91819424, 90698825, 77737706};
+        int[] sha512 = {90693936, 25091201, 99943326, 93441116, 38618901, 47863826};
+        for (int i = 0; i < TIMES.length; i++) {
+            long time = TIMES[i] * 1000L;
+            assertEquals(sha1[i], TOTP.getPassword(secret(SEED_SHA1), time, Algorithm.SHA1, 8, 30), "SHA1 at " + TIMES[i]);
+            assertEquals(sha256[i], TOTP.getPassword(secret(SEED_SHA256), time, Algorithm.SHA256, 8, 30), "SHA256 at " + TIMES[i]);
+            assertEquals(sha512[i], TOTP.getPassword(secret(SEED_SHA512), time, Algorithm.SHA512, 8, 30), "SHA512 at " + TIMES[i]);
+        }
+    }
+
+    @Test
+    void sameCodesAsGoogleAuthenticatorWithDefaults() {
+        GoogleAuthenticator reference = new GoogleAuthenticator();
+        Random random = new Random(6238);
+        for (int i = 0; i < 20_000; i++) {
+            String secret = SecretProvisioner.newSecret(Algorithm.SHA1);
+            long time = random.nextLong(4_000_000_000_000L);
+            assertEquals(reference.getTotpPassword(secret, time), TOTP.getPassword(secret, time, Algorithm.SHA1, 6, 30), secret + " at " + time);
+        }
+    }
+
+    @Test
+    void sameCodesAsGoogleAuthenticatorForEveryAlgorithmDigitsAndPeriod() {
+        HmacHashFunction[] functions = {HmacHashFunction.HmacSHA1, HmacHashFunction.HmacSHA256, HmacHashFunction.HmacSHA512};
+        Random random = new Random(4226);
+        for (Algorithm algorithm : Algorithm.values()) {
+            for (int digits = 6; digits <= 8; digits++) {
+                for (int period : new int[]{15, 30, 60}) {
+                    GoogleAuthenticator reference = new GoogleAuthenticator(new GoogleAuthenticatorConfig.GoogleAuthenticatorConfigBuilder()
+                            .setHmacHashFunction(functions[algorithm.ordinal()])
+                            .setCodeDigits(digits)
+                            .setTimeStepSizeInMillis(period * 1000L)
+                            .build());
+                    for (int i = 0; i < 500; i++) {
+                        String secret = SecretProvisioner.newSecret(algorithm);
+                        long time = random.nextLong(4_000_000_000_000L);
+                        assertEquals(reference.getTotpPassword(secret, time), TOTP.getPassword(secret, time, algorithm, digits, period),
+                                     algorithm + "/" + digits + "/" + period + " " + secret + " at " + time);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void otpuriUsesItsOwnAlgorithmDigitsAndPeriod() {
+        String secret = secret(SEED_SHA512);
+        OTPURI otpuri = new OTPURI.Builder().secret(secret).algorithm(Algorithm.SHA512).digits(8).period(60).build();
+        long time = 1234567890L * 1000L;
+        int expected = TOTP.getPassword(secret, time, Algorithm.SHA512, 8, 60);
+        assertEquals(expected, otpuri.getOTP(time));
+        assertEquals(expected, otpuri.getOTP(time - (time % 60_000L) + 59_999L));
+        assertEquals(String.format("%08d", expected), otpuri.getOTPString(time));
+    }
+
+    private static String secret(String seed) {
+        return SecretProvisioner.base32(seed.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,34 @@
+package com.simtechdata.otpuri;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entries for tests, cycling through every Algorithm, number of digits and period.
+ */
+final class TestEntries {
+
+    private static final int[] PERIODS = {15, 30, 60};
+
+    private TestEntries() {
+    }
+
+    /**
+     * @param count - int (27 covers every combination once)
+     * @return - List of OTPURI, with dbIds from 1 to count and a new secret each
+     */
+    static List<OTPURI> entries(int count) {
+        List<OTPURI> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Algorithm algorithm = Algorithm.values()[i % 3];
+            entries.add(new OTPURI.Builder()
+                                .dbId(i + 1)
+                                .secret(SecretProvisioner.newSecret(algorithm))
+                                .algorithm(algorithm)
+                                .digits(6 + (i / 3) % 3)
+                                .period(PERIODS[(i / 9) % 3])
+                                .build());
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,11 @@
+package com.simtechdata.otpuri.qr;
+
+/**
+ * The steps QRDecoder goes through, from the cheapest to the most thorough.
+ */
+public enum DecodeTier {
+	FAST,     //Downscaled when large, GlobalHistogramBinarizer, QR codes only
+	HYBRID,   //Full resolution, HybridBinarizer, TRY_HARDER
+	ROTATED,  //Same as HYBRID on the image turned 90, 180 and 270 degrees
+	CROPPED   //Same as HYBRID on each quarter and the center of the image
+}
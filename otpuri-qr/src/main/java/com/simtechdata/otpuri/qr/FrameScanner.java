@@ -0,0 +1,215 @@
+package com.simtechdata.otpuri.qr;
+
+import com.google.zxing.*;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import com.simtechdata.otpuri.OTPURI;
+
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scans raw camera frames for an OTPAuth QR code, without turning them into a BufferedImage or a file first.
+ * <p>
+ * Frames are passed in as luminance planes (the Y plane of a YUV frame, or any 8 bit grayscale frame), as a
+ * byte array or a ByteBuffer. Each thread keeps its own reader and, for ByteBuffers that are not backed by an
+ * array, its own copy buffer, so scanning a video stream does not allocate a new set of objects per frame.
+ * <p>
+ * A scanner decodes one frame at a time. Frames that arrive while a decode is still running are skipped
+ * instead of queued, so a slow decode never makes the scanner fall behind the camera. Once a frame contains
+ * an OTPAuth String that builds into an OTPURI, the scanner is done: every call after that returns the same
+ * OTPURI without decoding anything, until reset() is called.
+ */
+public class FrameScanner {
+
+    private static final Map<DecodeHintType, Object> HINTS = new EnumMap<>(DecodeHintType.class);
+    private static final ThreadLocal<QRCodeReader> readers = ThreadLocal.withInitial(QRCodeReader::new);
+    private static final ThreadLocal<byte[][]> copyBuffers = ThreadLocal.withInitial(() -> new byte[1][0]);
+
+    static {
+        HINTS.put(DecodeHintType.POSSIBLE_FORMATS, List.of(BarcodeFormat.QR_CODE));
+    }
+
+    private final AtomicBoolean busy = new AtomicBoolean(false);
+    private final AtomicLong framesScanned = new AtomicLong();
+    private final AtomicLong framesSkipped = new AtomicLong();
+    private volatile OTPURI result;
+
+    /**
+     * Default Constructor
+     */
+    public FrameScanner() {
+    }
+
+    /**
+     * Scans a whole frame.
+     *
+     * @param luminance  - byte[] (at least dataWidth * dataHeight bytes, one per pixel, row by row)
+     * @param dataWidth  - int
+     * @param dataHeight - int
+     * @return - OTPURI once one has been found, otherwise null
+     */
+    public OTPURI scan(byte[] luminance, int dataWidth, int dataHeight) {
+        return scan(luminance, dataWidth, dataHeight, 0, 0, dataWidth, dataHeight);
+    }
+
+    /**
+     * Scans part of a frame, which is useful when your scanner UI only shows a square in the middle of the
+     * camera picture.
+     *
+     * @param luminance  - byte[] (at least dataWidth * dataHeight bytes, one per pixel, row by row)
+     * @param dataWidth  - int
+     * @param dataHeight - int
+     * @param left       - int
+     * @param top        - int
+     * @param width      - int
+     * @param height     - int
+     * @return - OTPURI once one has been found, otherwise null
+     */
+    public OTPURI scan(byte[] luminance, int dataWidth, int dataHeight, int left, int top, int width, int height) {
+        OTPURI found = result;
+        if (found != null) {
+            return found;
+        }
+        if (!busy.compareAndSet(false, true)) {
+            framesSkipped.incrementAndGet();
+            return null;
+        }
+        try {
+            framesScanned.incrementAndGet();
+            return decode(luminance, dataWidth, dataHeight, left, top, width, height);
+        } finally {
+            busy.set(false);
+        }
+    }
+
+    /**
+     * Same as scan(byte[], int, int) for a frame in a ByteBuffer, starting at the position of the buffer.
+     *
+     * @param luminance  - ByteBuffer
+     * @param dataWidth  - int
+     * @param dataHeight - int
+     * @return - OTPURI once one has been found, otherwise null
+     */
+    public OTPURI scan(ByteBuffer luminance, int dataWidth, int dataHeight) {
+        return scan(luminance, dataWidth, dataHeight, 0, 0, dataWidth, dataHeight);
+    }
+
+    /**
+     * Same as scan(byte[], int, int, int, int, int, int) for a frame in a ByteBuffer, starting at the position
+     * of the buffer. The position of the buffer is not changed.
+     *
+     * @param luminance  - ByteBuffer
+     * @param dataWidth  - int
+     * @param dataHeight - int
+     * @param left       - int
+     * @param top        - int
+     * @param width      - int
+     * @param height     - int
+     * @return - OTPURI once one has been found, otherwise null
+     */
+    public OTPURI scan(ByteBuffer luminance, int dataWidth, int dataHeight, int left, int top, int width, int height) {
+        OTPURI found = result;
+        if (found != null) {
+            return found;
+        }
+        int length = dataWidth * dataHeight;
+        if (luminance.remaining() < length) {
+            throw new IllegalArgumentException("The buffer holds less than dataWidth * dataHeight bytes");
+        }
+        if (luminance.hasArray() && luminance.arrayOffset() + luminance.position() == 0) {
+            return scan(luminance.array(), dataWidth, dataHeight, left, top, width, height);
+        }
+        if (!busy.compareAndSet(false, true)) {
+            framesSkipped.incrementAndGet();
+            return null;
+        }
+        try {
+            framesScanned.incrementAndGet();
+            byte[][] holder = copyBuffers.get();
+            if (holder[0].length < length) {
+                holder[0] = new byte[length];
+            }
+            luminance.get(luminance.position(), holder[0], 0, length);
+            return decode(holder[0], dataWidth, dataHeight, left, top, width, height);
+        } finally {
+            busy.set(false);
+        }
+    }
+
+    /**
+     * gets the OTPURI that was found, if any
+     *
+     * @return - OTPURI, or null if none has been found yet
+     */
+    public OTPURI getResult() {
+        return result;
+    }
+
+    /**
+     * Tells you if an OTPURI has been found
+     *
+     * @return - boolean
+     */
+    public boolean isDone() {
+        return result != null;
+    }
+
+    /**
+     * Forgets the OTPURI that was found so the scanner can look for the next one.
+     */
+    public void reset() {
+        result = null;
+    }
+
+    /**
+     * gets the number of frames that were decoded
+     *
+     * @return - long
+     */
+    public long getFramesScanned() {
+        return framesScanned.get();
+    }
+
+    /**
+     * gets the number of frames that were skipped because another frame was still being decoded
+     *
+     * @return - long
+     */
+    public long getFramesSkipped() {
+        return framesSkipped.get();
+    }
+
+    private OTPURI decode(byte[] luminance, int dataWidth, int dataHeight, int left, int top, int width, int height) {
+        if (result != null) {
+            return result;
+        }
+        QRCodeReader reader = readers.get();
+        String text;
+        try {
+            LuminanceSource source = new PlanarYUVLuminanceSource(luminance, dataWidth, dataHeight, left, top, width, height, false);
+            text = reader.decode(new BinaryBitmap(new HybridBinarizer(source)), HINTS).getText();
+        } catch (NotFoundException | ChecksumException | FormatException e) {
+            return null;
+        } finally {
+            reader.reset();
+        }
+        if (text == null || !text.regionMatches(true, 0, "otpauth://", 0, 10)) {
+            return null;
+        }
+        OTPURI otpuri;
+        try {
+            otpuri = new OTPURI.Builder(text).build();
+        } catch (RuntimeException e) {
+            return null;
+        }
+        if (otpuri != null) {
+            result = otpuri;
+        }
+        return otpuri;
+    }
+}
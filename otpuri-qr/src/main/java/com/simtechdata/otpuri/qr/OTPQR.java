@@ -0,0 +1,114 @@
+package com.simtechdata.otpuri.qr;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.WriterException;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.simtechdata.otpuri.OTPURI;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Reads OTPURI objects from QR code images and renders them back into QR codes.
+ * <p>
+ * This lives in its own module so that apps which only parse OTPAuth Strings and generate One Time Passwords
+ * do not have to load java.desktop or ZXing.
+ */
+public class OTPQR {
+
+    private OTPQR() {
+    }
+
+    /**
+     * Reads the QR code in the image file and builds an OTPURI from the OTPAuth String it contains.
+     *
+     * @param qrCodeFile - File
+     * @return - OTPURI, or null if the QR code is empty
+     * @throws NotFoundException - if there is no QR code in the image
+     * @throws IOException       - if the file cannot be read or is not an image
+     */
+    public static OTPURI fromImage(File qrCodeFile) throws NotFoundException, IOException {
+        String otpAuth = decodeBufferedQRImage(qrCodeFile);
+        OTPURI otpuri = null;
+        if (!otpAuth.isEmpty()) {
+            otpuri = new OTPURI.Builder(otpAuth).build();
+        }
+        return otpuri;
+    }
+
+    /**
+     * Same as fromImage(File) for an image that is already in memory.
+     *
+     * @param bufferedImage - BufferedImage
+     * @return - OTPURI, or null if there is no QR code in the image
+     */
+    public static OTPURI fromImage(BufferedImage bufferedImage) {
+        String otpAuth = decodeBufferedQRImage(bufferedImage);
+        OTPURI otpuri = null;
+        if (!otpAuth.isEmpty()) {
+            otpuri = new OTPURI.Builder(otpAuth).build();
+        }
+        return otpuri;
+    }
+
+    /**
+     * Renders the OTPAuth String of the OTPURI as a square QR code image.
+     *
+     * @param otpuri - an OTPURI instance
+     * @param size   - int (width and height in pixels)
+     * @return - BufferedImage
+     * @throws WriterException - if the QR code cannot be encoded
+     */
+    public static BufferedImage toImage(OTPURI otpuri, int size) throws WriterException {
+        BitMatrix matrix = new QRCodeWriter().encode(otpuri.toString(), BarcodeFormat.QR_CODE, size, size);
+        return MatrixToImageWriter.toBufferedImage(matrix);
+    }
+
+    /**
+     * Renders the OTPAuth String of the OTPURI as a square QR code and saves it as a PNG file.
+     *
+     * @param otpuri - an OTPURI instance
+     * @param size   - int (width and height in pixels)
+     * @param file   - Path
+     * @throws WriterException - if the QR code cannot be encoded
+     * @throws IOException     - if the file cannot be written
+     */
+    public static void writeImage(OTPURI otpuri, int size, Path file) throws WriterException, IOException {
+        BitMatrix matrix = new QRCodeWriter().encode(otpuri.toString(), BarcodeFormat.QR_CODE, size, size);
+        MatrixToImageWriter.writeToPath(matrix, "PNG", file);
+    }
+
+    /**
+     * Decodes the QR code in the image file and tells you which tier of QRDecoder found it.
+     *
+     * @param qrCodeFile - File
+     * @return - QRDecodeResult
+     * @throws NotFoundException - if there is no QR code in the image
+     * @throws IOException       - if the file cannot be read or is not an image
+     */
+    public static QRDecodeResult decode(File qrCodeFile) throws NotFoundException, IOException {
+        BufferedImage bufferedImage = ImageIO.read(qrCodeFile);
+        if (bufferedImage == null) {
+            throw new IOException("not an image that can be read");
+        }
+        return QRDecoder.decode(bufferedImage);
+    }
+
+    private static String decodeBufferedQRImage(File qrCodeFile) throws IOException, NotFoundException {
+        return decode(qrCodeFile).getText();
+    }
+
+    private static String decodeBufferedQRImage(BufferedImage bufferedImage) {
+        try {
+            return QRDecoder.decode(bufferedImage).getText();
+        } catch (NotFoundException e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.simtechdata.otpuri.qr;
+
+/**
+ * The text of a decoded QR code and the tier of QRDecoder that found it.
+ */
+public class QRDecodeResult {
+
+    private final String text;
+    private final DecodeTier tier;
+
+    QRDecodeResult(String text, DecodeTier tier) {
+        this.text = text;
+        this.tier = tier;
+    }
+
+    /**
+     * gets the text that is encoded in the QR code
+     *
+     * @return - String
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * gets the tier that decoded the QR code
+     *
+     * @return - DecodeTier
+     */
+    public DecodeTier getTier() {
+        return tier;
+    }
+
+    @Override
+    public String toString() {
+        return tier + ": " + text;
+    }
+}
@@ -0,0 +1,129 @@
+package com.simtechdata.otpuri.qr;
+
+import com.google.zxing.*;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes QR codes in tiers, so that the common case is fast and the hard cases still get decoded.
+ * <p>
+ * Most images (clean screenshots, saved QR codes) decode on the first tier: the image is scaled down if it
+ * is large and read with the cheap GlobalHistogramBinarizer, looking for QR codes only. Only when that fails
+ * does the decoder fall back to HybridBinarizer with TRY_HARDER on the full image, then on the image turned
+ * around, and finally on parts of the image, which helps when the QR code is small compared to the rest of
+ * a large screenshot.
+ */
+public final class QRDecoder {
+
+    private static final int MAX_FAST_DIMENSION = 1200;
+    private static final Map<DecodeHintType, Object> FAST_HINTS = new EnumMap<>(DecodeHintType.class);
+    private static final Map<DecodeHintType, Object> HARD_HINTS = new EnumMap<>(DecodeHintType.class);
+
+    static {
+        FAST_HINTS.put(DecodeHintType.POSSIBLE_FORMATS, List.of(BarcodeFormat.QR_CODE));
+        HARD_HINTS.putAll(FAST_HINTS);
+        HARD_HINTS.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+    }
+
+    private QRDecoder() {
+    }
+
+    /**
+     * Decodes the QR code in the image.
+     *
+     * @param image - BufferedImage
+     * @return - QRDecodeResult
+     * @throws NotFoundException - if none of the tiers found a QR code
+     */
+    public static QRDecodeResult decode(BufferedImage image) throws NotFoundException {
+        QRCodeReader reader = new QRCodeReader();
+
+        BufferedImage small = downscale(image);
+        LuminanceSource fast = new BufferedImageLuminanceSource(small);
+        String text = read(reader, new GlobalHistogramBinarizer(fast), FAST_HINTS);
+        if (text != null) {
+            return new QRDecodeResult(text, DecodeTier.FAST);
+        }
+
+        LuminanceSource source = (small == image) ? fast : new BufferedImageLuminanceSource(image);
+        text = read(reader, new HybridBinarizer(source), HARD_HINTS);
+        if (text != null) {
+            return new QRDecodeResult(text, DecodeTier.HYBRID);
+        }
+
+        LuminanceSource rotated = source;
+        for (int turn = 0; turn < 3 && rotated.isRotateSupported(); turn++) {
+            rotated = rotated.rotateCounterClockwise();
+            text = read(reader, new HybridBinarizer(rotated), HARD_HINTS);
+            if (text != null) {
+                return new QRDecodeResult(text, DecodeTier.ROTATED);
+            }
+        }
+
+        if (source.isCropSupported()) {
+            int width = source.getWidth();
+            int height = source.getHeight();
+            int halfWidth = width / 2;
+            int halfHeight = height / 2;
+            int[][] regions = {
+                    {0, 0, halfWidth, halfHeight},
+                    {halfWidth, 0, width - halfWidth, halfHeight},
+                    {0, halfHeight, halfWidth, height - halfHeight},
+                    {halfWidth, halfHeight, width - halfWidth, height - halfHeight},
+                    {width / 4, height / 4, halfWidth, halfHeight}
+            };
+            for (int[] region : regions) {
+                text = read(reader, new HybridBinarizer(source.crop(region[0], region[1], region[2], region[3])), HARD_HINTS);
+                if (text != null) {
+                    return new QRDecodeResult(text, DecodeTier.CROPPED);
+                }
+            }
+        }
+        throw NotFoundException.getNotFoundInstance();
+    }
+
+    private static String read(QRCodeReader reader, Binarizer binarizer, Map<DecodeHintType, Object> hints) {
+        try {
+            return reader.decode(new BinaryBitmap(binarizer), hints).getText();
+        } catch (NotFoundException | ChecksumException | FormatException e) {
+            return null;
+        } finally {
+            reader.reset();
+        }
+    }
+
+    /**
+     * Scales the image down to a grayscale image that fits in MAX_FAST_DIMENSION, or returns it as it is
+     * when it already fits. Transparent pixels become white, like they do in BufferedImageLuminanceSource.
+     */
+    private static BufferedImage downscale(BufferedImage image) {
+        int largest = Math.max(image.getWidth(), image.getHeight());
+        if (largest <= MAX_FAST_DIMENSION) {
+            return image;
+        }
+        double scale = (double) MAX_FAST_DIMENSION / largest;
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+}
@@ -0,0 +1,9 @@
+//ZXing only ships automatic modules, and its types (NotFoundException, WriterException) are part of the OTPQR API
+@SuppressWarnings("requires-transitive-automatic")
+module com.simtechdata.otpuri.qr {
+    requires transitive com.simtechdata.otpuri;
+    requires transitive com.google.zxing;
+    requires com.google.zxing.javase;
+    requires transitive java.desktop;
+    exports com.simtechdata.otpuri.qr;
+}
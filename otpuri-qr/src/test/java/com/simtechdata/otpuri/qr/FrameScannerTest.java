@@ -0,0 +1,128 @@
+package com.simtechdata.otpuri.qr;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.simtechdata.otpuri.OTPURI;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameScannerTest {
+
+    private static final int SIZE = 400;
+    private static final OTPURI OTPURI = new OTPURI.Builder().issuer("Acme").accountName("alice").secret("JBSWY3DPEHPK3PXP").build();
+
+    @Test
+    void decodesAYPlane() throws Exception {
+        FrameScanner scanner = new FrameScanner();
+        OTPURI found = scanner.scan(yPlane(OTPQR.toImage(OTPURI, SIZE)), SIZE, SIZE);
+        assertNotNull(found);
+        assertEquals(OTPURI.toString(), found.toString());
+        assertTrue(scanner.isDone());
+        assertSame(found, scanner.getResult());
+        assertEquals(1, scanner.getFramesScanned());
+    }
+
+    @Test
+    void returnsEarlyOnceDoneUntilReset() throws Exception {
+        FrameScanner scanner = new FrameScanner();
+        byte[] frame = yPlane(OTPQR.toImage(OTPURI, SIZE));
+        byte[] blank = new byte[SIZE * SIZE];
+        Arrays.fill(blank, (byte) 0xFF);
+        OTPURI found = scanner.scan(frame, SIZE, SIZE);
+        assertSame(found, scanner.scan(blank, SIZE, SIZE));
+        assertSame(found, scanner.scan(ByteBuffer.allocateDirect(SIZE * SIZE), SIZE, SIZE));
+        assertEquals(1, scanner.getFramesScanned());
+
+        scanner.reset();
+        assertFalse(scanner.isDone());
+        assertNull(scanner.getResult());
+        assertNull(scanner.scan(blank, SIZE, SIZE));
+        assertEquals(2, scanner.getFramesScanned());
+        assertNotNull(scanner.scan(frame, SIZE, SIZE));
+        assertEquals(3, scanner.getFramesScanned());
+    }
+
+    @Test
+    void ignoresCodesThatAreNotOTPAuthStrings() throws Exception {
+        BufferedImage image = MatrixToImageWriter.toBufferedImage(new QRCodeWriter().encode("https://example.com", BarcodeFormat.QR_CODE, SIZE, SIZE));
+        FrameScanner scanner = new FrameScanner();
+        assertNull(scanner.scan(yPlane(image), SIZE, SIZE));
+        assertFalse(scanner.isDone());
+    }
+
+    @Test
+    void readsBuffersFromTheirPosition() throws Exception {
+        byte[] frame = yPlane(OTPQR.toImage(OTPURI, SIZE));
+        int skip = 1234;
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(skip + frame.length);
+        direct.put(new byte[skip]).put(frame).position(skip);
+        assertNotNull(new FrameScanner().scan(direct, SIZE, SIZE));
+        assertEquals(skip, direct.position());
+
+        byte[] padded = new byte[skip + frame.length];
+        System.arraycopy(frame, 0, padded, skip, frame.length);
+        ByteBuffer heap = ByteBuffer.wrap(padded).position(skip);
+        assertNotNull(new FrameScanner().scan(heap, SIZE, SIZE));
+        assertEquals(skip, heap.position());
+        assertNotNull(new FrameScanner().scan(heap.slice(), SIZE, SIZE));
+
+        assertThrows(IllegalArgumentException.class, () -> new FrameScanner().scan(ByteBuffer.allocateDirect(10), SIZE, SIZE));
+    }
+
+    @Test
+    void skipsFramesWhileBusy() throws Exception {
+        int size = 2000;
+        byte[] noise = new byte[size * size];
+        new Random(35).nextBytes(noise);
+        FrameScanner scanner = new FrameScanner();
+        AtomicLong calls = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        for (int t = 0; t < 4; t++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (scanner.getFramesSkipped() == 0 && System.nanoTime() < deadline) {
+                    assertNull(scanner.scan(noise, size, size));
+                    calls.incrementAndGet();
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        assertTrue(scanner.getFramesSkipped() > 0);
+        assertEquals(calls.get(), scanner.getFramesScanned() + scanner.getFramesSkipped());
+    }
+
+    /**
+     * The Y plane a camera would hand over for the image: one luminance byte per pixel, row by row.
+     */
+    private static byte[] yPlane(BufferedImage image) {
+        int width = image.getWidth();
+        byte[] plane = new byte[width * image.getHeight()];
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < width; x++) {
+                plane[y * width + x] = (byte) image.getRGB(x, y);
+            }
+        }
+        return plane;
+    }
+}
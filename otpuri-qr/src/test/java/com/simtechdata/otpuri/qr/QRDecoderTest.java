@@ -0,0 +1,81 @@
+package com.simtechdata.otpuri.qr;
+
+import com.google.zxing.NotFoundException;
+import com.simtechdata.otpuri.OTPURI;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QRDecoderTest {
+
+    private static final OTPURI OTPURI = new OTPURI.Builder().issuer("Acme").accountName("alice").secret("JBSWY3DPEHPK3PXP").build();
+
+    @Test
+    void cleanCodeIsReadByTheFastTier() throws Exception {
+        QRDecodeResult result = QRDecoder.decode(OTPQR.toImage(OTPURI, 300));
+        assertEquals(DecodeTier.FAST, result.getTier());
+        assertEquals(OTPURI.toString(), result.getText());
+    }
+
+    @Test
+    void smallCodeInALargeNoisyImageIsFoundInACrop() throws Exception {
+        //Three decoys made of only the finder patterns of the same code, so that every tier that looks at the
+        //whole image (turned around or not) locks onto a decoy first, while the quarter with the real code does not
+        BufferedImage code = OTPQR.toImage(OTPURI, 160);
+        BufferedImage decoy = finderPatternsOnly(code);
+        BufferedImage image = noise(4000, 3000);
+        Graphics2D graphics = image.createGraphics();
+        graphics.drawImage(code, 500, 1875, null);
+        graphics.drawImage(decoy, 500, 375, null);
+        graphics.drawImage(decoy, 2500, 375, null);
+        graphics.drawImage(decoy, 2500, 1875, null);
+        graphics.dispose();
+
+        QRDecodeResult result = QRDecoder.decode(image);
+        assertEquals(DecodeTier.CROPPED, result.getTier());
+        assertEquals(OTPURI.toString(), result.getText());
+    }
+
+    @Test
+    void imageWithoutACodeThrows() {
+        assertThrows(NotFoundException.class, () -> QRDecoder.decode(noise(1600, 1200)));
+    }
+
+    private static BufferedImage noise(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(34);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (88 + random.nextInt(81)) * 0x010101);
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage finderPatternsOnly(BufferedImage code) {
+        int margin = 0;
+        while (code.getRGB(margin, margin) != Color.BLACK.getRGB()) {
+            margin++;
+        }
+        int finder = 0;
+        while (code.getRGB(margin + finder, margin) == Color.BLACK.getRGB()) {
+            finder++;
+        }
+        int corner = margin + finder + finder / 7; //The finder pattern and its white separator
+        int size = code.getWidth();
+        BufferedImage decoy = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = decoy.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, size, size);
+        graphics.drawImage(code.getSubimage(0, 0, corner, corner), 0, 0, null);
+        graphics.drawImage(code.getSubimage(size - corner, 0, corner, corner), size - corner, 0, null);
+        graphics.drawImage(code.getSubimage(0, size - corner, corner, corner), 0, size - corner, null);
+        graphics.dispose();
+        return decoy;
+    }
+}